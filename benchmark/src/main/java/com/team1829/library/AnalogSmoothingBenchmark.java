@@ -0,0 +1,78 @@
+package com.team1829.library;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.team1829.library.CarbonAnalogInput.SmoothingMode;
+import com.team1829.library.benchmark.SimulatedRobot;
+import com.team1829.library.hal.SimAnalogSource;
+import com.team1829.library.hal.SimulatedHardware;
+
+/**
+ * One tick of CarbonAnalogInput's smoothing task in each mode, across
+ * window sizes.  The simulated sensor walks through a pseudo-random
+ * sequence so the median window is reordered on every sample.
+ *
+ * Kept in the library's package so it can call the input's tick()
+ * directly; the manual scheduler never runs the task on its own, so
+ * the benchmark is its only writer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalogSmoothingBenchmark
+{
+	@Param({"25", "100", "500", "1000", "4096"})
+	public int bufferSize;
+	
+	@Param({"AVERAGE", "MEDIAN"})
+	public SmoothingMode mode;
+	
+	private CarbonAnalogInput input;
+	private SimAnalogSource sensor;
+	private int seed;
+	
+	@Setup
+	public void setup()
+	{
+		SimulatedHardware hardware = SimulatedRobot.install();
+		sensor = hardware.getAnalogSource(0);
+		input = new CarbonAnalogInput(0, mode, bufferSize);
+		seed = 1829;
+		
+		//Fill the window so every tick evicts a real reading.
+		for(int i = 0; i < bufferSize; i++)
+		{
+			step();
+		}
+	}
+	
+	private void step()
+	{
+		//Cheap LCG, kept in the 12-bit range of the roboRIO's converter.
+		seed = seed * 1103515245 + 12345;
+		sensor.setValue((seed >>> 16) & 0xFFF);
+		input.tick();
+	}
+	
+	@Benchmark
+	public double smoothingTick()
+	{
+		step();
+		return mode == SmoothingMode.AVERAGE ? input.getAverageSmoothedValue() : input.getMedianSmoothedValue();
+	}
+}
@@ -0,0 +1,109 @@
+package com.team1829.library.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.team1829.library.CarbonUI;
+import com.team1829.library.hal.SimHidSource;
+import com.team1829.library.hal.SimulatedHardware;
+
+/**
+ * Control lookups in CarbonUI, by name and by handle, with and without
+ * a poll() snapshot.  The control read is always the last one added,
+ * the worst case for any lookup that scans.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CarbonUIBenchmark
+{
+	@Param({"10", "50", "200"})
+	public int controlCount;
+	
+	private CarbonUI ui;
+	private SimHidSource joystick;
+	private String buttonName;
+	private String axisName;
+	private CarbonUI.ControlHandle buttonHandle;
+	private CarbonUI.ControlHandle axisHandle;
+	private boolean toggle;
+	
+	@Setup
+	public void setup()
+	{
+		SimulatedHardware hardware = SimulatedRobot.install();
+		ui = new CarbonUI();
+		for(int i = 0; i < controlCount; i++)
+		{
+			int port = i % CarbonUI.PORT_COUNT;
+			if(i % 2 == 0)
+			{
+				buttonName = "Button" + i;
+				buttonHandle = ui.addControl(buttonName, CarbonUI.ControlType.Button, port, 1 + (i / 2) % CarbonUI.MAX_BUTTONS);
+			}
+			else
+			{
+				axisName = "Axis" + i;
+				axisHandle = ui.addControl(axisName, CarbonUI.ControlType.Axis, port, (i / 2) % CarbonUI.MAX_AXES);
+			}
+		}
+		joystick = hardware.getHidSource(0);
+		toggle = false;
+	}
+	
+	@Benchmark
+	public boolean buttonByName()
+	{
+		return ui.getButtonState(buttonName);
+	}
+	
+	@Benchmark
+	public boolean buttonByHandle()
+	{
+		return buttonHandle.getButtonState();
+	}
+	
+	@Benchmark
+	public double axisByName()
+	{
+		return ui.getAxisData(axisName);
+	}
+	
+	@Benchmark
+	public double axisByHandle()
+	{
+		return axisHandle.getAxisData();
+	}
+	
+	@Benchmark
+	public boolean pressByName()
+	{
+		toggle = !toggle;
+		joystick.setButton(1, toggle);
+		return ui.getButtonPress(buttonName);
+	}
+	
+	/**
+	 * One full loop: snapshot every control, then read one of each.
+	 */
+	@Benchmark
+	public double pollAndRead()
+	{
+		ui.poll();
+		return ui.getAxisData(axisName) + (ui.getButtonState(buttonName) ? 1.0 : 0.0);
+	}
+}
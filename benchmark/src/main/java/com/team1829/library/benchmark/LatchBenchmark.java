@@ -0,0 +1,70 @@
+package com.team1829.library.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.team1829.library.LatchBoolean;
+import com.team1829.library.LatchDouble;
+
+/**
+ * Edge detection in LatchBoolean and LatchDouble, fed inputs that
+ * change every few calls so both branches are taken.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LatchBenchmark
+{
+	private LatchBoolean latchBoolean;
+	private LatchDouble latchDouble;
+	private int count;
+	
+	@Setup
+	public void setup()
+	{
+		latchBoolean = new LatchBoolean();
+		latchDouble = new LatchDouble();
+		count = 0;
+	}
+	
+	@Benchmark
+	public boolean booleanOnTrue()
+	{
+		count++;
+		return latchBoolean.onTrue((count & 4) != 0);
+	}
+	
+	@Benchmark
+	public boolean booleanOnChange()
+	{
+		count++;
+		return latchBoolean.onChange((count & 4) != 0);
+	}
+	
+	@Benchmark
+	public boolean doubleOnEnter()
+	{
+		count++;
+		return latchDouble.onEnterThreshold(((count & 63) - 32) / 32.0, 0.5);
+	}
+	
+	@Benchmark
+	public boolean doubleOnExit()
+	{
+		count++;
+		return latchDouble.onExitThreshold(((count & 63) - 32) / 32.0, 0.5);
+	}
+}
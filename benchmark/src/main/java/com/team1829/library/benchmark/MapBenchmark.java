@@ -0,0 +1,56 @@
+package com.team1829.library.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.team1829.library.Carbon;
+
+/**
+ * Carbon.map in both its double and int forms.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapBenchmark
+{
+	private double axis;
+	private int raw;
+	
+	@Setup
+	public void setup()
+	{
+		axis = -1.0;
+		raw = 0;
+	}
+	
+	@Benchmark
+	public double mapDouble()
+	{
+		axis += 0.001;
+		if(axis > 1.0)
+		{
+			axis = -1.0;
+		}
+		return Carbon.map(axis, -1.0, 1.0, 0.0, 360.0);
+	}
+	
+	@Benchmark
+	public int mapInt()
+	{
+		raw = (raw + 1) & 0xFFF;
+		return Carbon.map(raw, 0, 4095, 0, 1000);
+	}
+}
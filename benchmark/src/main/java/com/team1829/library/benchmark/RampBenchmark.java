@@ -0,0 +1,59 @@
+package com.team1829.library.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.team1829.library.RampedMotor;
+import com.team1829.library.hal.SimClock;
+import com.team1829.library.hal.SimulatedHardware;
+
+/**
+ * One step of the motor ramp, on a simulated clock that moves one ramp
+ * period per step.  The target flips whenever it is reached so the ramp
+ * is always moving.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RampBenchmark
+{
+	private RampedMotor motor;
+	private RampedMotor.RampTask task;
+	private SimClock clock;
+	
+	@Setup
+	public void setup()
+	{
+		SimulatedHardware hardware = SimulatedRobot.install();
+		clock = hardware.getClock();
+		motor = new RampedMotor(hardware.getMotorOutput(0), "RampBenchmark");
+		motor.setRampEnabled(true);
+		motor.set(1.0);
+		task = motor.new RampTask();
+	}
+	
+	@Benchmark
+	public double rampStep()
+	{
+		if(motor.get() == motor.getTarget())
+		{
+			motor.set(-motor.getTarget());
+		}
+		clock.advance(RampedMotor.RAMP_TIME * 1000000L);
+		task.run();
+		return motor.get();
+	}
+}
@@ -0,0 +1,29 @@
+package com.team1829.library.benchmark;
+
+import com.team1829.library.CarbonScheduler;
+import com.team1829.library.hal.Hardware;
+import com.team1829.library.hal.SimulatedHardware;
+
+/**
+ * Installs simulated hardware and a manual scheduler so that benchmarks
+ * never touch WPILib or start a scheduler thread.
+ */
+public final class SimulatedRobot
+{
+	private SimulatedRobot()
+	{
+	}
+	
+	/**
+	 * Makes every device created after this call use fresh simulated
+	 * hardware and a scheduler that only runs when told to.
+	 * @return The simulated hardware, for setting inputs.
+	 */
+	public static SimulatedHardware install()
+	{
+		SimulatedHardware hardware = new SimulatedHardware();
+		Hardware.setFactory(hardware);
+		CarbonScheduler.setInstance(new CarbonScheduler(hardware.getClock()));
+		return hardware;
+	}
+}
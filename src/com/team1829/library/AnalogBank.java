@@ -0,0 +1,354 @@
+package com.team1829.library;
+
+import com.team1829.library.filter.SampleFilter;
+import com.team1829.library.hal.AnalogSource;
+import com.team1829.library.hal.Clock;
+import com.team1829.library.hal.Hardware;
+import com.team1829.library.metrics.CarbonMetrics;
+import com.team1829.library.metrics.LatencyHistogram;
+
+/**
+ * Smooths many analog channels together with one scheduler task.
+ *
+ * Rather than each sensor keeping its own buffer and task, the bank
+ * reads every channel in one sweep and keeps all of their data in a few
+ * shared primitive arrays.  The rolling windows are stored one row per
+ * reading, with each row holding every channel side by side, so the
+ * running sums are updated by a single tight loop over the row.  The
+ * sorted windows for the medians sit end to end in one array.
+ *
+ * After each sweep, every channel's results are published together as
+ * one array of AnalogSamples, so all of them come from the same sweep.
+ *
+ * A CarbonAnalogInput made with CarbonAnalogInput(bank, channel) is a
+ * view onto one channel, for code that already uses that API.
+ */
+public class AnalogBank
+{
+	private AnalogSource[] sources;
+	private String[] names;
+	private int channels;
+	private int bufferSize;
+	private Clock clock;
+	private int[] deviceIds;
+	private LatencyHistogram filterMetric;
+	private CarbonScheduler.ScheduledTask task;
+	private volatile SampleFilter[] filters;
+
+	/*
+	 * Only touched by the SweepTask.
+	 */
+	private int[] window;
+	private int[] sorted;
+	private long[] sums;
+	private int[] values;
+	private int[] oldValues;
+	private int row;
+	private long sequence;
+
+	/*
+	 * The latest results for every channel, replaced as a whole on
+	 * every sweep.
+	 */
+	private volatile AnalogSample[] latest;
+
+	/**
+	 * Creates a bank over the given analog ports and starts sweeping.
+	 * Channel N of the bank is ports[N].
+	 * @param ports The analog ports to read.
+	 * @param bufferSize The number of readings to smooth over.
+	 * @param period The time between sweeps, in milliseconds.
+	 */
+	public AnalogBank(int[] ports, int bufferSize, long period)
+	{
+		this(getSources(ports), getNames(ports), bufferSize, period, getBankName(ports));
+	}
+
+	/**
+	 * Creates a bank over any AnalogSources and starts sweeping.
+	 * @param sources The sensors to read, one per channel.
+	 * @param names The name each channel is recorded under.
+	 * @param bufferSize The number of readings to smooth over.
+	 * @param period The time between sweeps, in milliseconds.
+	 * @throws IllegalArgumentException If there isn't exactly one name per
+	 * source.
+	 */
+	public AnalogBank(AnalogSource[] sources, String[] names, int bufferSize, long period)
+	{
+		this(sources, names, bufferSize, period, getBankName(names));
+	}
+
+	/**
+	 * Creates a bank over any AnalogSources and starts sweeping.
+	 * @param sources The sensors to read, one per channel.
+	 * @param names The name each channel is recorded under.
+	 * @param bufferSize The number of readings to smooth over.
+	 * @param period The time between sweeps, in milliseconds.
+	 * @param name The name the bank's sweep is measured under.
+	 * @throws IllegalArgumentException If there isn't exactly one name per
+	 * source.
+	 */
+	public AnalogBank(AnalogSource[] sources, String[] names, int bufferSize, long period, String name)
+	{
+		if(names.length != sources.length)
+		{
+			throw new IllegalArgumentException(name + " needs one name per source, not " + names.length + " for " + sources.length + "!");
+		}
+		if(bufferSize < 1)
+		{
+			bufferSize = 1;
+		}
+		if(period < 1)
+		{
+			period = 1;
+		}
+
+		this.sources = sources.clone();
+		this.names = names.clone();
+		this.channels = sources.length;
+		this.bufferSize = bufferSize;
+		this.clock = Hardware.getClock();
+		this.filters = new SampleFilter[channels];
+		this.filterMetric = CarbonMetrics.histogram(name + ".filter");
+
+		deviceIds = new int[channels];
+		for(int i = 0; i < channels; i++)
+		{
+			deviceIds[i] = CarbonRecorder.registerDevice(names[i]);
+		}
+
+		window = new int[bufferSize * channels];
+		sorted = new int[bufferSize * channels];
+		sums = new long[channels];
+		values = new int[channels];
+		oldValues = new int[channels];
+		row = 0;
+		sequence = 0;
+
+		AnalogSample[] initial = new AnalogSample[channels];
+		long now = clock.nanoTime();
+		for(int i = 0; i < channels; i++)
+		{
+			initial[i] = new AnalogSample(0, 0.0, 0, 0.0, now, -1);
+		}
+		latest = initial;
+		task = CarbonScheduler.getInstance().schedule(new SweepTask(), period, name);
+	}
+
+	/**
+	 * @return The number of channels in the bank.
+	 */
+	public int getChannelCount()
+	{
+		return channels;
+	}
+
+	/**
+	 * @return The number of readings each channel is smoothed over.
+	 */
+	public int getBufferSize()
+	{
+		return bufferSize;
+	}
+
+	/**
+	 * @param channel A channel of the bank.
+	 * @return The sensor that channel reads.
+	 */
+	public AnalogSource getSource(int channel)
+	{
+		return sources[channel];
+	}
+
+	/**
+	 * @param channel A channel of the bank.
+	 * @return The name that channel is recorded under.
+	 */
+	public String getName(int channel)
+	{
+		return names[channel];
+	}
+
+	/**
+	 * @param channel A channel of the bank.
+	 * @return That channel's results from the latest sweep.
+	 */
+	public AnalogSample getSample(int channel)
+	{
+		return latest[channel];
+	}
+
+	/**
+	 * Returns every channel's results from the latest sweep.  The array
+	 * is shared and must not be changed.
+	 * @return The latest samples, indexed by channel.
+	 */
+	public AnalogSample[] getSamples()
+	{
+		return latest;
+	}
+
+	/**
+	 * Copies every channel's average from the latest sweep.
+	 * @param dest Where to copy to, at least getChannelCount() long.
+	 */
+	public void readAverages(double[] dest)
+	{
+		AnalogSample[] samples = latest;
+		for(int i = 0; i < channels; i++)
+		{
+			dest[i] = samples[i].getAverage();
+		}
+	}
+
+	/**
+	 * Copies every channel's median from the latest sweep.
+	 * @param dest Where to copy to, at least getChannelCount() long.
+	 */
+	public void readMedians(int[] dest)
+	{
+		AnalogSample[] samples = latest;
+		for(int i = 0; i < channels; i++)
+		{
+			dest[i] = samples[i].getMedian();
+		}
+	}
+
+	/**
+	 * Sets a filter to run on every reading of one channel.  The filter
+	 * is reset before it starts receiving readings.
+	 * @param channel A channel of the bank.
+	 * @param filter The filter to run, or null for none.
+	 */
+	public synchronized void setFilter(int channel, SampleFilter filter)
+	{
+		if(filter != null)
+		{
+			filter.reset();
+		}
+		SampleFilter[] next = filters.clone();
+		next[channel] = filter;
+		filters = next;
+	}
+
+	/**
+	 * @param channel A channel of the bank.
+	 * @return The filter run on that channel, or null if there is none.
+	 */
+	public SampleFilter getFilter(int channel)
+	{
+		return filters[channel];
+	}
+
+	/**
+	 * Stops sweeping.  The results keep whatever they held at the time
+	 * of the call.
+	 */
+	public void free()
+	{
+		task.cancel();
+	}
+
+	private static AnalogSource[] getSources(int[] ports)
+	{
+		AnalogSource[] sources = new AnalogSource[ports.length];
+		for(int i = 0; i < ports.length; i++)
+		{
+			sources[i] = Hardware.getFactory().getAnalogSource(ports[i]);
+		}
+		return sources;
+	}
+
+	private static String[] getNames(int[] ports)
+	{
+		String[] names = new String[ports.length];
+		for(int i = 0; i < ports.length; i++)
+		{
+			names[i] = "CarbonAnalogInput " + ports[i];
+		}
+		return names;
+	}
+
+	//"AnalogBank 0,1,2" for ports 0, 1, and 2.
+	private static String getBankName(int[] ports)
+	{
+		StringBuilder name = new StringBuilder("AnalogBank ");
+		for(int i = 0; i < ports.length; i++)
+		{
+			name.append(i == 0 ? "" : ",").append(ports[i]);
+		}
+		return name.toString();
+	}
+
+	//"AnalogBank [left, right]" for channels named left and right.
+	private static String getBankName(String[] names)
+	{
+		StringBuilder name = new StringBuilder("AnalogBank [");
+		for(int i = 0; i < names.length; i++)
+		{
+			name.append(i == 0 ? "" : ", ").append(names[i]);
+		}
+		return name.append(']').toString();
+	}
+
+	/**
+	 * Task run by the CarbonScheduler that reads and smooths every
+	 * channel.
+	 */
+	private class SweepTask implements Runnable
+	{
+		public void run()
+		{
+			long timestamp = clock.nanoTime();
+			for(int i = 0; i < channels; i++)
+			{
+				values[i] = sources[i].getValue();
+			}
+
+			/*
+			 * Swap this sweep's row into the window and keep the
+			 * running sums in step.  The sums are longs over ints,
+			 * so they are exact and never drift.
+			 */
+			int base = row * channels;
+			for(int i = 0; i < channels; i++)
+			{
+				int old = window[base + i];
+				oldValues[i] = old;
+				window[base + i] = values[i];
+				sums[i] += values[i] - old;
+			}
+			row = (row + 1) % bufferSize;
+
+			for(int i = 0; i < channels; i++)
+			{
+				RollingMedian.replace(sorted, i * bufferSize, bufferSize, oldValues[i], values[i]);
+			}
+
+			SampleFilter[] activeFilters = filters;
+			AnalogSample[] next = new AnalogSample[channels];
+			int middle = bufferSize / 2;
+			for(int i = 0; i < channels; i++)
+			{
+				int value = values[i];
+				double filtered = value;
+				SampleFilter filter = activeFilters[i];
+				if(filter != null)
+				{
+					long filterStart = clock.nanoTime();
+					filtered = filter.filter(value);
+					filterMetric.record(clock.nanoTime() - filterStart);
+				}
+				double average = (double)sums[i] / bufferSize;
+				next[i] = new AnalogSample(value, average, sorted[i * bufferSize + middle], filtered, timestamp, sequence);
+				CarbonRecorder.record(deviceIds[i], CarbonRecorder.TYPE_ANALOG, 0, value, filtered);
+			}
+			sequence++;
+
+			/*
+			 * Publish every channel from this sweep in one write.
+			 */
+			latest = next;
+		}
+	}
+}
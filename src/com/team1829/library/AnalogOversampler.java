@@ -0,0 +1,263 @@
+package com.team1829.library;
+
+import java.util.concurrent.TimeUnit;
+
+import com.team1829.library.filter.SampleFilter;
+import com.team1829.library.hal.AnalogSource;
+
+/**
+ * High-rate acquisition for an analog sensor.  Reads the sensor at
+ * anywhere from 1 to 5 kHz on the CarbonScheduler, keeps every raw
+ * reading in a primitive ring buffer, and decimates down to the rate
+ * the consumer actually wants.
+ *
+ * Decimation averages each block of readings (a boxcar, which already
+ * rejects noise at multiples of the output rate).  For a sharper cutoff
+ * an anti-aliasing SampleFilter, such as a BiquadFilter low-pass at
+ * under half the output rate, can be run on every raw reading before it
+ * is averaged.
+ *
+ * Both rings have a single writer, the scheduler thread.  Readers copy
+ * out blocks without locking and check afterwards that the writer
+ * hasn't lapped them; keep blocks well under the ring size.
+ */
+public class AnalogOversampler
+{
+	public static final int MIN_SAMPLE_RATE = 1;
+	public static final int MAX_SAMPLE_RATE = 5000;
+
+	/**
+	 * Size of the raw ring.  A power of two so wrapping is a mask.
+	 */
+	public static final int RAW_RING_SIZE = 8192;
+
+	/**
+	 * Size of the decimated ring, also a power of two.
+	 */
+	public static final int DECIMATED_RING_SIZE = 1024;
+
+	private AnalogSource source;
+	private String name;
+	private int sampleRate;
+	private int decimation;
+	private SampleFilter antiAlias;
+	private CarbonScheduler.ScheduledTask task;
+
+	private int[] rawRing;
+	private volatile long rawCount;
+
+	private double[] decimatedRing;
+	private volatile long decimatedCount;
+	private volatile double latestDecimated;
+
+	//Only touched by the sampling task.
+	private double accumulator;
+	private int accumulated;
+
+	/**
+	 * Creates an oversampler.  It does nothing until start() is called.
+	 * @param source The sensor to read.
+	 * @param sampleRateHz How often to read the sensor, 1 to 5000 Hz.
+	 * @param outputRateHz How often to produce a decimated value.  Rounded
+	 * so that the sample rate is a whole multiple of it.
+	 * @param antiAlias Filter run on each raw reading before decimation,
+	 * or null to rely on block averaging alone.
+	 * @param name The name the sampling task is measured under, such as
+	 * "CarbonAnalogInput 2.oversampler".
+	 */
+	public AnalogOversampler(AnalogSource source, int sampleRateHz, int outputRateHz, SampleFilter antiAlias, String name)
+	{
+		if(sampleRateHz < MIN_SAMPLE_RATE)
+		{
+			sampleRateHz = MIN_SAMPLE_RATE;
+		}
+		if(sampleRateHz > MAX_SAMPLE_RATE)
+		{
+			sampleRateHz = MAX_SAMPLE_RATE;
+		}
+		if(outputRateHz < 1)
+		{
+			outputRateHz = 1;
+		}
+		if(outputRateHz > sampleRateHz)
+		{
+			outputRateHz = sampleRateHz;
+		}
+
+		this.source = source;
+		this.name = name;
+		this.sampleRate = sampleRateHz;
+		this.decimation = Math.max(1, Math.round((float)sampleRateHz / outputRateHz));
+		this.antiAlias = antiAlias;
+		rawRing = new int[RAW_RING_SIZE];
+		decimatedRing = new double[DECIMATED_RING_SIZE];
+		rawCount = 0;
+		decimatedCount = 0;
+		latestDecimated = 0.0;
+	}
+
+	/**
+	 * Starts reading the sensor on the CarbonScheduler.
+	 */
+	public synchronized void start()
+	{
+		if(task != null)
+		{
+			return;
+		}
+		accumulator = 0.0;
+		accumulated = 0;
+		if(antiAlias != null)
+		{
+			antiAlias.reset();
+		}
+		task = CarbonScheduler.getInstance().schedule(new SampleTask(), 1000000000L / sampleRate, TimeUnit.NANOSECONDS, name);
+	}
+
+	/**
+	 * Stops reading the sensor.  Data already captured can still be read.
+	 */
+	public synchronized void stop()
+	{
+		if(task != null)
+		{
+			task.cancel();
+			task = null;
+		}
+	}
+
+	/**
+	 * @return True if the sensor is being read.
+	 */
+	public synchronized boolean isRunning()
+	{
+		return task != null;
+	}
+
+	/**
+	 * @return How often the sensor is read, in Hz.
+	 */
+	public int getSampleRate()
+	{
+		return sampleRate;
+	}
+
+	/**
+	 * @return The number of raw readings per decimated value.
+	 */
+	public int getDecimation()
+	{
+		return decimation;
+	}
+
+	/**
+	 * @return The actual decimated output rate, in Hz.
+	 */
+	public double getOutputRate()
+	{
+		return (double)sampleRate / decimation;
+	}
+
+	/**
+	 * @return The most recent decimated value.
+	 */
+	public double getDecimatedValue()
+	{
+		return latestDecimated;
+	}
+
+	/**
+	 * @return The number of decimated values produced so far.
+	 */
+	public long getDecimatedCount()
+	{
+		return decimatedCount;
+	}
+
+	/**
+	 * @return The number of raw readings taken so far.
+	 */
+	public long getRawCount()
+	{
+		return rawCount;
+	}
+
+	/**
+	 * Copies the most recent decimated values, oldest first.
+	 * @param dest Where to copy to.  Up to dest.length values, and fewer
+	 * than DECIMATED_RING_SIZE, are copied.
+	 * @return The number of values copied.
+	 */
+	public int readDecimated(double[] dest)
+	{
+		while(true)
+		{
+			long end = decimatedCount;
+			int n = (int)Math.min(Math.min(dest.length, end), DECIMATED_RING_SIZE - 1);
+			long start = end - n;
+			for(int i = 0; i < n; i++)
+			{
+				dest[i] = decimatedRing[(int)((start + i) & (DECIMATED_RING_SIZE - 1))];
+			}
+			//Retry if the writer lapped the block while it was copied.  The
+			//writer fills slot 'count' before publishing count + 1, so the
+			//oldest slot is only safe while fewer than SIZE are ahead of it.
+			if(decimatedCount - start < DECIMATED_RING_SIZE)
+			{
+				return n;
+			}
+		}
+	}
+
+	/**
+	 * Copies the most recent raw readings, oldest first.
+	 * @param dest Where to copy to.  Up to dest.length readings, and fewer
+	 * than RAW_RING_SIZE, are copied.
+	 * @return The number of readings copied.
+	 */
+	public int readRaw(int[] dest)
+	{
+		while(true)
+		{
+			long end = rawCount;
+			int n = (int)Math.min(Math.min(dest.length, end), RAW_RING_SIZE - 1);
+			long start = end - n;
+			for(int i = 0; i < n; i++)
+			{
+				dest[i] = rawRing[(int)((start + i) & (RAW_RING_SIZE - 1))];
+			}
+			if(rawCount - start < RAW_RING_SIZE)
+			{
+				return n;
+			}
+		}
+	}
+
+	/**
+	 * Task run by the CarbonScheduler at the sample rate.
+	 */
+	private class SampleTask implements Runnable
+	{
+		public void run()
+		{
+			int value = source.getValue();
+			long count = rawCount;
+			rawRing[(int)(count & (RAW_RING_SIZE - 1))] = value;
+			rawCount = count + 1;
+
+			accumulator += antiAlias == null ? value : antiAlias.filter(value);
+			accumulated++;
+			if(accumulated == decimation)
+			{
+				double decimated = accumulator / decimation;
+				accumulator = 0.0;
+				accumulated = 0;
+
+				long outCount = decimatedCount;
+				decimatedRing[(int)(outCount & (DECIMATED_RING_SIZE - 1))] = decimated;
+				latestDecimated = decimated;
+				decimatedCount = outCount + 1;
+			}
+		}
+	}
+}
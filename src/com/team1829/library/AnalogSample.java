@@ -0,0 +1,86 @@
+package com.team1829.library;
+
+/**
+ * One immutable set of readings published by a CarbonAnalogInput.
+ * Because every field is final and the whole sample is published with
+ * a single volatile write, a reader always sees values that belong
+ * together, without locking and without ever waiting on the sampling
+ * thread.
+ */
+public final class AnalogSample
+{
+	private final int raw;
+	private final double average;
+	private final int median;
+	private final double filtered;
+	private final long timestamp;
+	private final long sequence;
+	
+	/**
+	 * @param raw The unaltered reading taken on this tick.
+	 * @param average The rolling average as of this tick.
+	 * @param median The rolling median as of this tick.
+	 * @param filtered The output of the input's filter as of this tick.
+	 * @param timestamp When the reading was taken, in clock nanoseconds.
+	 * @param sequence How many samples came before this one.
+	 */
+	public AnalogSample(int raw, double average, int median, double filtered, long timestamp, long sequence)
+	{
+		this.raw = raw;
+		this.average = average;
+		this.median = median;
+		this.filtered = filtered;
+		this.timestamp = timestamp;
+		this.sequence = sequence;
+	}
+	
+	/**
+	 * @return The unaltered reading taken on this tick.
+	 */
+	public int getRaw()
+	{
+		return raw;
+	}
+	
+	/**
+	 * @return The rolling average as of this tick.
+	 */
+	public double getAverage()
+	{
+		return average;
+	}
+	
+	/**
+	 * @return The rolling median as of this tick.
+	 */
+	public int getMedian()
+	{
+		return median;
+	}
+	
+	/**
+	 * @return The output of the input's filter as of this tick, or the
+	 * raw reading if it has no filter.
+	 */
+	public double getFiltered()
+	{
+		return filtered;
+	}
+	
+	/**
+	 * @return When the reading was taken, in clock nanoseconds.
+	 */
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+	
+	/**
+	 * @return How many samples came before this one.  Two reads with the
+	 * same sequence number saw the same sample.
+	 */
+	public long getSequence()
+	{
+		return sequence;
+	}
+}
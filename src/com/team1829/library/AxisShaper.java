@@ -0,0 +1,241 @@
+package com.team1829.library;
+
+/**
+ * Shapes a joystick axis the way drivers like it: inverted, with a
+ * deadband around center, an expo curve for fine control near center,
+ * scaled, and slew limited so the output can't jump.
+ *
+ * Every stage but the slew limit only depends on the raw value, so
+ * whenever one is changed they are worked out together at TABLE_POINTS
+ * evenly spaced positions between -1 and 1 and kept in a
+ * CalibrationCurve.  Shaping a value then costs one table index and one
+ * interpolation no matter how many stages are set, and never calls
+ * Math.pow() in the loop.  The stages are applied in this order:
+ * <ol>
+ * <li>Invert: flips the sign.</li>
+ * <li>Deadband: anything within 'deadband' of center is 0, and the rest
+ * is stretched back out so the output still reaches 1.</li>
+ * <li>Expo: blends in 'weight' of sign(x) * |x|^power.  A power of 3 is
+ * the usual cubic curve.</li>
+ * <li>Scale: multiplies by 'scale'.</li>
+ * <li>Slew limit: the output moves at most 'rate' per second.</li>
+ * </ol>
+ * Raw values outside -1 to 1 are treated as -1 or 1.
+ *
+ * Give one to an axis with CarbonUI.Control.setShaper() and every read of
+ * that axis is shaped, computed once per loop by CarbonUI.poll().
+ */
+public class AxisShaper
+{
+	/**
+	 * Number of points in the lookup table.  Gives 1/512 between points.
+	 */
+	public static final int TABLE_POINTS = 1025;
+
+	private boolean inverted;
+	private double deadband;
+	private double expoPower;
+	private double expoWeight;
+	private double scale;
+	private double slewRate;
+
+	private CalibrationCurve table;
+
+	private double lastOutput;
+	private long lastTime;
+	private boolean started;
+
+	/**
+	 * Creates an AxisShaper that passes values through unchanged.
+	 */
+	public AxisShaper()
+	{
+		inverted = false;
+		deadband = 0.0;
+		expoPower = 3.0;
+		expoWeight = 0.0;
+		scale = 1.0;
+		slewRate = 0.0;
+		compile();
+	}
+
+	/**
+	 * Creates an AxisShaper with the same stages as 'other'.  The lookup
+	 * table is shared rather than rebuilt, but the slew limit starts
+	 * fresh, so each axis can have its own copy.
+	 * @param other The AxisShaper to copy.
+	 */
+	public AxisShaper(AxisShaper other)
+	{
+		inverted = other.inverted;
+		deadband = other.deadband;
+		expoPower = other.expoPower;
+		expoWeight = other.expoWeight;
+		scale = other.scale;
+		slewRate = other.slewRate;
+		table = other.table;
+	}
+
+	/**
+	 * @param inverted True to flip the sign of the axis.
+	 */
+	public void setInverted(boolean inverted)
+	{
+		this.inverted = inverted;
+		compile();
+	}
+
+	/**
+	 * @param deadband How far from center counts as center, from 0 to
+	 * just under 1.
+	 */
+	public void setDeadband(double deadband)
+	{
+		this.deadband = Math.min(Math.max(deadband, 0.0), 0.99);
+		compile();
+	}
+
+	/**
+	 * Sets the expo curve.
+	 * @param power The power of the curve, above 0.  3 for the usual
+	 * cubic.
+	 * @param weight How much of the curve to blend in, from 0 (straight
+	 * line) to 1 (all curve).
+	 * @throws IllegalArgumentException If the power isn't above 0, which
+	 * would blow up near center instead of staying between 0 and 1.
+	 */
+	public void setExpo(double power, double weight)
+	{
+		if(!(power > 0))
+		{
+			throw new IllegalArgumentException("Expo power must be above 0, not " + power + "!");
+		}
+		this.expoPower = power;
+		this.expoWeight = Math.min(Math.max(weight, 0.0), 1.0);
+		compile();
+	}
+
+	/**
+	 * @param scale What the output is multiplied by.
+	 */
+	public void setScale(double scale)
+	{
+		this.scale = scale;
+		compile();
+	}
+
+	/**
+	 * @param rate How far the output may move per second, or 0 for no
+	 * limit.
+	 */
+	public void setSlewRate(double rate)
+	{
+		this.slewRate = rate > 0 ? rate : 0.0;
+	}
+
+	/**
+	 * Shapes a value without the slew limit.
+	 * @param raw The raw axis value.
+	 * @return The shaped value.
+	 */
+	public double apply(double raw)
+	{
+		return table.apply(raw);
+	}
+
+	/**
+	 * Shapes a value, slew limit and all.  Call once per new reading.
+	 * @param raw The raw axis value.
+	 * @param now The time of the reading, in nanoseconds.
+	 * @return The shaped value.
+	 */
+	public double shape(double raw, long now)
+	{
+		double output = table.apply(raw);
+		if(slewRate > 0 && started)
+		{
+			double step = slewRate * (now - lastTime) / 1e9;
+			if(output > lastOutput + step)
+			{
+				output = lastOutput + step;
+			}
+			else if(output < lastOutput - step)
+			{
+				output = lastOutput - step;
+			}
+		}
+		lastOutput = output;
+		lastTime = now;
+		started = true;
+		return output;
+	}
+
+	/**
+	 * Forgets the last output, so the next shape() isn't slew limited.
+	 */
+	public void reset()
+	{
+		started = false;
+	}
+
+	public boolean isInverted()
+	{
+		return inverted;
+	}
+
+	public double getDeadband()
+	{
+		return deadband;
+	}
+
+	public double getExpoPower()
+	{
+		return expoPower;
+	}
+
+	public double getExpoWeight()
+	{
+		return expoWeight;
+	}
+
+	public double getScale()
+	{
+		return scale;
+	}
+
+	public double getSlewRate()
+	{
+		return slewRate;
+	}
+
+	//Rebuilds the lookup table from the current stages.
+	private void compile()
+	{
+		double[] points = new double[TABLE_POINTS];
+		for(int i = 0; i < TABLE_POINTS; i++)
+		{
+			points[i] = evaluate(-1.0 + 2.0 * i / (TABLE_POINTS - 1));
+		}
+		table = CalibrationCurve.uniform(-1.0, 1.0, points);
+	}
+
+	//Runs every stage but the slew limit on one value.
+	private double evaluate(double x)
+	{
+		if(inverted)
+		{
+			x = -x;
+		}
+		double magnitude = Math.abs(x);
+		if(magnitude <= deadband)
+		{
+			return 0.0;
+		}
+		magnitude = (magnitude - deadband) / (1.0 - deadband);
+		if(expoWeight > 0)
+		{
+			magnitude = (1.0 - expoWeight) * magnitude + expoWeight * Math.pow(magnitude, expoPower);
+		}
+		return (x < 0 ? -magnitude : magnitude) * scale;
+	}
+}
@@ -0,0 +1,194 @@
+package com.team1829.library;
+
+/**
+ * Converts a sensor reading to a real-world value through a measured
+ * calibration, such as potentiometer voltage to arm angle or IR
+ * rangefinder voltage to distance, interpolating in a straight line
+ * between the measured points.
+ *
+ * A curve can be built two ways:
+ * <ul>
+ * <li>uniform() takes outputs measured at evenly spaced inputs.  The
+ * right pair of points is found with one multiply, so this is the
+ * fastest form.</li>
+ * <li>breakpoints() takes any sorted inputs with their outputs, and
+ * finds the right pair with a binary search.  toUniform() resamples it
+ * into a uniform curve when speed matters more than exactness.</li>
+ * </ul>
+ * Inputs outside the table give the output at the nearest end.
+ */
+public class CalibrationCurve
+{
+	//Breakpoint inputs, or null for a uniform table.
+	private double[] inputs;
+	private double[] outputs;
+
+	private double inMin;
+	private double inMax;
+	//Table points per unit of input, for uniform tables.
+	private double scale;
+
+	/**
+	 * Creates a curve from outputs measured at evenly spaced inputs.
+	 * @param inMin The input the first output was measured at.
+	 * @param inMax The input the last output was measured at.
+	 * @param outputs The measured outputs, at least two.
+	 * @return The curve.
+	 */
+	public static CalibrationCurve uniform(double inMin, double inMax, double[] outputs)
+	{
+		if(outputs.length < 2 || !(inMax > inMin))
+		{
+			throw new IllegalArgumentException("CalibrationCurve needs two points and inMax > inMin!");
+		}
+		return new CalibrationCurve(null, outputs.clone(), inMin, inMax);
+	}
+
+	/**
+	 * Creates a curve from measured points.
+	 * @param inputs The inputs, in increasing order.
+	 * @param outputs The output measured at each input.
+	 * @return The curve.
+	 */
+	public static CalibrationCurve breakpoints(double[] inputs, double[] outputs)
+	{
+		if(inputs.length != outputs.length || inputs.length < 2)
+		{
+			throw new IllegalArgumentException("CalibrationCurve needs two or more matching points!");
+		}
+		for(int i = 1; i < inputs.length; i++)
+		{
+			if(!(inputs[i] > inputs[i - 1]))
+			{
+				throw new IllegalArgumentException("CalibrationCurve inputs must be increasing!");
+			}
+		}
+		return new CalibrationCurve(inputs.clone(), outputs.clone(), inputs[0], inputs[inputs.length - 1]);
+	}
+
+	private CalibrationCurve(double[] inputs, double[] outputs, double inMin, double inMax)
+	{
+		this.inputs = inputs;
+		this.outputs = outputs;
+		this.inMin = inMin;
+		this.inMax = inMax;
+		this.scale = (outputs.length - 1) / (inMax - inMin);
+	}
+
+	/**
+	 * Resamples this curve onto evenly spaced inputs.
+	 * @param points The number of points in the new table.
+	 * @return A uniform curve over the same input range.
+	 */
+	public CalibrationCurve toUniform(int points)
+	{
+		if(points < 2)
+		{
+			points = 2;
+		}
+		double[] table = new double[points];
+		double step = (inMax - inMin) / (points - 1);
+		for(int i = 0; i < points; i++)
+		{
+			table[i] = apply(inMin + i * step);
+		}
+		return uniform(inMin, inMax, table);
+	}
+
+	/**
+	 * @param value A sensor reading.
+	 * @return The calibrated value.
+	 */
+	public double apply(double value)
+	{
+		if(!(value > inMin))
+		{
+			return outputs[0];
+		}
+		if(!(value < inMax))
+		{
+			return outputs[outputs.length - 1];
+		}
+
+		if(inputs == null)
+		{
+			double position = (value - inMin) * scale;
+			int i = (int)position;
+			if(i >= outputs.length - 1)
+			{
+				return outputs[outputs.length - 1];
+			}
+			double fraction = position - i;
+			return outputs[i] + (outputs[i + 1] - outputs[i]) * fraction;
+		}
+
+		//Find the last input at or below value.
+		int low = 0;
+		int high = inputs.length - 1;
+		while(high - low > 1)
+		{
+			int mid = (low + high) >>> 1;
+			if(inputs[mid] <= value)
+			{
+				low = mid;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		double fraction = (value - inputs[low]) / (inputs[high] - inputs[low]);
+		return outputs[low] + (outputs[high] - outputs[low]) * fraction;
+	}
+
+	/**
+	 * Calibrates every value in 'in' into the same place in 'out'.  The
+	 * two may be the same array.
+	 * @param in The sensor readings.
+	 * @param out Where to put the results, at least as long as 'in'.
+	 */
+	public void apply(double[] in, double[] out)
+	{
+		apply(in, out, in.length);
+	}
+
+	/**
+	 * Calibrates the first 'count' values in 'in' into 'out'.
+	 * @param in The sensor readings.
+	 * @param out Where to put the results.
+	 * @param count The number of values to calibrate.
+	 */
+	public void apply(double[] in, double[] out, int count)
+	{
+		for(int i = 0; i < count; i++)
+		{
+			out[i] = apply(in[i]);
+		}
+	}
+
+	/**
+	 * @return True if this curve has evenly spaced inputs.
+	 */
+	public boolean isUniform()
+	{
+		return inputs == null;
+	}
+
+	/**
+	 * @return The number of points in the table.
+	 */
+	public int getPointCount()
+	{
+		return outputs.length;
+	}
+
+	public double getInputMin()
+	{
+		return inMin;
+	}
+
+	public double getInputMax()
+	{
+		return inMax;
+	}
+}
@@ -7,19 +7,19 @@ package com.team1829.library;
  */
 public class Carbon 
 {
+	/**
+	 * Maps 'value' from one range onto another.  For a mapping used
+	 * every loop, make a LinearMap once instead, which works out the
+	 * slope and intercept ahead of time.
+	 */
 	public static double map(double value, double oldMin, double oldMax, double newMin, double newMax)
 	{
-		double mInput = value;
-		double x1 = oldMin;
-		double x2 = oldMax;
-		double y1 = newMin;
-		double y2 = newMax;
-
-		return ((mInput * ((y2-y1)/(x2-x1))) + (y2 - (((y2-y1)/(x2-x1)) * x2)));
+		double slope = (newMax - newMin) / (oldMax - oldMin);
+		return (value * slope) + (newMax - (slope * oldMax));
 	}
 	
 	public static int map(int input, int oldMin, int oldMax, int newMin, int newMax) 
 	{
 		return (int) map((double) input, (double) oldMin, (double) oldMax, (double) newMin, (double) newMax);
 	}
-}
\ No newline at end of file
+}
@@ -1,14 +1,33 @@
 package com.team1829.library;
 
-import java.util.Arrays;
-import java.util.Timer;
-import java.util.TimerTask;
-
-import edu.wpi.first.wpilibj.AnalogInput;
+import com.team1829.library.filter.SampleFilter;
+import com.team1829.library.hal.AnalogSource;
+import com.team1829.library.hal.Clock;
+import com.team1829.library.hal.Hardware;
+import com.team1829.library.metrics.CarbonMetrics;
+import com.team1829.library.metrics.LatencyHistogram;
 
 /**
  * Analog sensor implementation that includes a
  * data smoothing algorithm based on rolling calculations.
+ * 
+ * Each tick's results are published together as one immutable
+ * AnalogSample, so reading them never blocks or contends with the
+ * thread that takes the readings.
+ * 
+ * Any SampleFilter, or a FilterChain of them, can also be run on
+ * every reading with setFilter(), alongside the average and median.
+ * 
+ * For fast signals, enableHighRate() adds an AnalogOversampler that
+ * reads the sensor at up to 5 kHz and decimates it to the rate the
+ * consumer wants.
+ * 
+ * A CarbonAnalogInput can also be a view onto one channel of an
+ * AnalogBank, which smooths many sensors in one sweep.  A view has no
+ * task or buffer of its own and reads its results from the bank.
+ * 
+ * How long each smoothing tick takes, how late it runs, and how long
+ * the filter takes are kept in CarbonMetrics under the sensor's name.
  * @author Nick Mosher, Team 1829 Carbonauts Captain
  */
 public class CarbonAnalogInput 
@@ -23,13 +42,32 @@ public class CarbonAnalogInput
 		MEDIAN
 	}
 	
-	private AnalogInput analog;
-	private Timer controlLoop;
-	private boolean averageEnabled;
-	private boolean medianEnabled;
+	private AnalogSource analog;
+	private String name;
+	private Clock clock;
+	private int deviceId;
+	private LatencyHistogram filterMetric;
+	private SmoothingTask smoothingTask;
+	private CarbonScheduler.ScheduledTask controlLoop;
+	private volatile boolean averageEnabled;
+	private volatile boolean medianEnabled;
+	private volatile SampleFilter filter;
+	private AnalogOversampler oversampler;
+	private AnalogBank bank;
+	private int bankChannel;
+	
+	/*
+	 * Only touched by the SmoothingTask.
+	 */
 	private int[] dataBuffer;
-	private double smoothedAverage;
-	private int smoothedMedian;
+	private long bufferSum;
+	private RollingMedian rollingMedian;
+	private long sequence;
+	
+	/*
+	 * The latest results, replaced as a whole on every tick.
+	 */
+	private volatile AnalogSample latest;
 	
 	/**
 	 * Constructs a CarbonAnalogInput object with the specified analogPort,
@@ -41,7 +79,28 @@ public class CarbonAnalogInput
 	 */
 	public CarbonAnalogInput(int analogPort, SmoothingMode defaultMode, int bufferSize, long period)
 	{
-		analog = new AnalogInput(analogPort);
+		this(Hardware.getFactory().getAnalogSource(analogPort), defaultMode, bufferSize, period,
+				"CarbonAnalogInput " + analogPort);
+	}
+	
+	/**
+	 * Constructs a CarbonAnalogInput that reads from any AnalogSource,
+	 * such as a simulated sensor.  An AnalogSource has no port to name
+	 * it by, so give it a name of its own; inputs sharing a name share
+	 * their recordings and metrics.
+	 * @param source The sensor to read from.
+	 * @param bufferSize The number of readings to average in the rolling
+	 * data smoother.
+	 * @param period The time between each sensor read.
+	 * @param name The name this sensor is recorded and measured under.
+	 */
+	public CarbonAnalogInput(AnalogSource source, SmoothingMode defaultMode, int bufferSize, long period, String name)
+	{
+		analog = source;
+		this.name = name;
+		clock = Hardware.getClock();
+		deviceId = CarbonRecorder.registerDevice(name);
+		filterMetric = CarbonMetrics.histogram(name + ".filter");
 		averageEnabled = false;
 		medianEnabled = false;
 		
@@ -57,6 +116,11 @@ public class CarbonAnalogInput
 			break;
 		}
 		
+		if(period < 1)
+		{
+			period = 1;
+		}
+		
 		if(bufferSize < 1)
 		{
 			bufferSize = 1;
@@ -66,10 +130,41 @@ public class CarbonAnalogInput
 		{
 			dataBuffer[i] = 0;
 		}
-		smoothedAverage = 0;
-		smoothedMedian = 0;
-		controlLoop = new Timer();
-		controlLoop.schedule(new SmoothingTask(), 0L, 50);
+		bufferSum = 0;
+		rollingMedian = new RollingMedian(bufferSize);
+		sequence = 0;
+		latest = new AnalogSample(0, 0.0, 0, 0.0, clock.nanoTime(), -1);
+		smoothingTask = new SmoothingTask();
+		controlLoop = CarbonScheduler.getInstance().schedule(smoothingTask, period, name);
+	}
+	
+	/**
+	 * Constructs a CarbonAnalogInput that is a view onto one channel of
+	 * an AnalogBank.  The bank's buffer size and period apply.
+	 * @param bank The bank doing the reading and smoothing.
+	 * @param channel The channel of the bank to view.
+	 * @param defaultMode The smoothing mode to start with.
+	 */
+	public CarbonAnalogInput(AnalogBank bank, int channel, SmoothingMode defaultMode)
+	{
+		this.bank = bank;
+		this.bankChannel = channel;
+		analog = bank.getSource(channel);
+		name = bank.getName(channel);
+		clock = Hardware.getClock();
+		averageEnabled = defaultMode == SmoothingMode.AVERAGE;
+		medianEnabled = defaultMode == SmoothingMode.MEDIAN;
+	}
+	
+	/**
+	 * Constructs a CarbonAnalogInput that is a view onto one channel of
+	 * an AnalogBank, with the default smoothing mode.
+	 * @param bank The bank doing the reading and smoothing.
+	 * @param channel The channel of the bank to view.
+	 */
+	public CarbonAnalogInput(AnalogBank bank, int channel)
+	{
+		this(bank, channel, DEFAULT_MODE);
 	}
 	
 	/**
@@ -126,6 +221,43 @@ public class CarbonAnalogInput
 		}
 	}
 	
+	/**
+	 * Sets a filter to run on every reading.  The filter is reset
+	 * before it starts receiving readings.
+	 * @param filter The filter to run, or null for none.
+	 */
+	public void setFilter(SampleFilter filter)
+	{
+		if(bank != null)
+		{
+			bank.setFilter(bankChannel, filter);
+			return;
+		}
+		if(filter != null)
+		{
+			filter.reset();
+		}
+		this.filter = filter;
+	}
+	
+	/**
+	 * @return The filter run on every reading, or null if there is none.
+	 */
+	public SampleFilter getFilter()
+	{
+		return bank == null ? filter : bank.getFilter(bankChannel);
+	}
+	
+	/**
+	 * Returns the output of the filter set with setFilter(), or the
+	 * latest raw reading if there is no filter.
+	 * @return Current filtered sensor value.
+	 */
+	public double getFilteredValue()
+	{
+		return getSample().getFiltered();
+	}
+	
 	/**
 	 * Returns a value averaged from the past X sensor readings,
 	 * where X is the initialized bufferSize.
@@ -135,7 +267,7 @@ public class CarbonAnalogInput
 	{
 		if(averageEnabled)
 		{
-			return smoothedAverage;			
+			return getSample().getAverage();
 		}
 		return 0.0;
 	}
@@ -149,11 +281,22 @@ public class CarbonAnalogInput
 	{
 		if(medianEnabled)
 		{
-			return smoothedMedian;			
+			return getSample().getMedian();
 		}
 		return 0;
 	}
 	
+	/**
+	 * Returns the raw, average, and median values from the same
+	 * tick, along with when it happened.  Use this rather than
+	 * several getters in a row when the values must agree.
+	 * @return The latest published sample.
+	 */
+	public AnalogSample getSample()
+	{
+		return bank == null ? latest : bank.getSample(bankChannel);
+	}
+	
 	/**
 	 * Returns the unaltered sensor value straight from the 
 	 * analog sensor.
@@ -165,68 +308,148 @@ public class CarbonAnalogInput
 	}
 	
 	/**
-	 * Task that will spawn a thread for constantly reading
+	 * Stops reading and smoothing this sensor.  The smoothed values
+	 * keep whatever they held at the time of the call.  A view onto an
+	 * AnalogBank leaves the bank running.
+	 */
+	public void free()
+	{
+		if(controlLoop != null)
+		{
+			controlLoop.cancel();
+		}
+		disableHighRate();
+	}
+	
+	/**
+	 * Starts reading the sensor at a high rate, separately from the
+	 * regular smoothing, and decimating the readings down to
+	 * 'outputRateHz'.  Replaces any high-rate mode already running.
+	 * @param sampleRateHz How often to read the sensor, 1 to 5000 Hz.
+	 * @param outputRateHz How often to produce a decimated value.
+	 * @param antiAlias Filter run on every raw reading before decimating,
+	 * or null to only average each block.
+	 * @return The oversampler, for reading blocks of samples.
+	 */
+	public synchronized AnalogOversampler enableHighRate(int sampleRateHz, int outputRateHz, SampleFilter antiAlias)
+	{
+		disableHighRate();
+		oversampler = new AnalogOversampler(analog, sampleRateHz, outputRateHz, antiAlias, name + ".oversampler");
+		oversampler.start();
+		return oversampler;
+	}
+	
+	/**
+	 * Stops high-rate reading, if it was running.
+	 */
+	public synchronized void disableHighRate()
+	{
+		if(oversampler != null)
+		{
+			oversampler.stop();
+			oversampler = null;
+		}
+	}
+	
+	/**
+	 * @return The running oversampler, or null if high-rate mode is off.
+	 */
+	public synchronized AnalogOversampler getOversampler()
+	{
+		return oversampler;
+	}
+	
+	/**
+	 * @return The latest decimated high-rate value, or 0 if high-rate
+	 * mode is off.
+	 */
+	public double getHighRateValue()
+	{
+		AnalogOversampler current = getOversampler();
+		return current == null ? 0.0 : current.getDecimatedValue();
+	}
+	
+	//Runs one smoothing pass on the caller's thread, for benchmarks that
+	//install a manual scheduler which never runs the task itself.  Never
+	//call it while the scheduler is running the task too.
+	void tick()
+	{
+		if(smoothingTask != null)
+		{
+			smoothingTask.run();
+		}
+	}
+	
+	/**
+	 * Task run by the CarbonScheduler for constantly reading
 	 * from the analog sensor and storing the values into
 	 * an array.  The array is then smoothed, causing the 
 	 * output of the CarbonAnalogInput to better represent
 	 * the trend of the data.
 	 * @author Nick Mosher, Team 1829 Carbonauts Captain
 	 */
-	public class SmoothingTask extends TimerTask
+	private class SmoothingTask implements Runnable
 	{
 		private int index;
 		
-		public SmoothingTask()
+		private SmoothingTask()
 		{
 			index = 0;
 		}
 		
-		@Override
 		public void run() 
 		{
 			/*
 			 * Update the dataBuffer regardless of whether
 			 * either smoothing algorithm is active or not.
+			 * The running sum is kept up to date along with it
+			 * by swapping the oldest reading for the newest.
+			 * Readings are ints and the sum is a long, so the
+			 * sum is exact and never drifts from the buffer.
 			 */
-			synchronized(CarbonAnalogInput.this)
-			{
-				dataBuffer[index] = analog.getValue();
-				index = (index + 1) % dataBuffer.length;
-			}
+			long timestamp = clock.nanoTime();
+			int value = analog.getValue();
+			bufferSum += value - dataBuffer[index];
+			dataBuffer[index] = value;
+			index = (index + 1) % dataBuffer.length;
+			rollingMedian.add(value);
+			
+			AnalogSample previous = latest;
+			double average = previous.getAverage();
+			int median = previous.getMedian();
 			
 			if(averageEnabled)
 			{
 				/*
 				 * Use a rolling-average method of data smoothing.
 				 */
-				synchronized(CarbonAnalogInput.this)
-				{
-					smoothedAverage = 0;
-					for(int i = 0; i < dataBuffer.length; i++)
-					{
-						smoothedAverage += (double)dataBuffer[i];
-					}
-					smoothedAverage /= (double)dataBuffer.length;
-				}
+				average = (double)bufferSum / (double)dataBuffer.length;
 			}
 			
 			if(medianEnabled)
 			{
 				/*
 				 * Use a rolling-median method of data smoothing.
+				 * The RollingMedian keeps its window sorted as
+				 * readings arrive, so there is nothing to sort here.
 				 */
-				synchronized(CarbonAnalogInput.this)
-				{
-					smoothedMedian = 0;
-					int[] orderedList = new int[dataBuffer.length];
-					for(int i = 0; i < dataBuffer.length; i++)
-					{
-						orderedList[i] = dataBuffer[i];
-					}
-					Arrays.sort(orderedList);
-					smoothedMedian = orderedList[((int)orderedList.length)/2];
-				}
+				median = rollingMedian.getMedian();
 			}
+			
+			SampleFilter activeFilter = filter;
+			double filtered = value;
+			if(activeFilter != null)
+			{
+				long filterStart = clock.nanoTime();
+				filtered = activeFilter.filter(value);
+				filterMetric.record(clock.nanoTime() - filterStart);
+			}
+			
+			/*
+			 * Publish everything from this tick in one write.
+			 */
+			latest = new AnalogSample(value, average, median, filtered, timestamp, sequence++);
+			CarbonRecorder.record(deviceId, CarbonRecorder.TYPE_ANALOG, 0, value, filtered);
 		}
 	}
-}
\ No newline at end of file
+}
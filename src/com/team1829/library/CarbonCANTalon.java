@@ -1,30 +1,35 @@
 package com.team1829.library;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import com.team1829.library.hal.MotorOutput;
 
 import edu.wpi.first.wpilibj.CANTalon;
 
-public class CarbonCANTalon extends CANTalon
+/**
+ * CANTalon with an optional output ramp.  The ramping itself is done by
+ * a RampedMotor that writes through to this CANTalon.
+ */
+public class CarbonCANTalon extends CANTalon implements MotorOutput
 {
-	public static final double RAMP_STEP = 0.05;
-	public static final long RAMP_TIME = 20;
+	public static final double RAMP_STEP = RampedMotor.RAMP_STEP;
+	public static final long RAMP_TIME = RampedMotor.RAMP_TIME;
 	
-	private Timer rampTimer;
-	private boolean rampEnabled = false;
-	
-	private double target = 0.0;
-	private double rampStep = RAMP_STEP; //default values
-	private long rampTime = RAMP_TIME; //default values
+	private RampedMotor ramp;
 	
 	public CarbonCANTalon(int deviceNumber, double step, long time) 
 	{	
 		super(deviceNumber);
-		target = 0.0;
-		rampStep = step;
-		rampTime = time;
-		rampTimer = new Timer();
-		rampTimer.schedule(new RampTask(), 0, rampTime);
+		ramp = new RampedMotor(new MotorOutput()
+		{
+			public void set(double power)
+			{
+				CarbonCANTalon.super.set(power);
+			}
+			
+			public double get()
+			{
+				return CarbonCANTalon.super.get();
+			}
+		}, step, time, "CarbonCANTalon " + deviceNumber);
 	}
 	
 	public CarbonCANTalon(int deviceNumber)
@@ -34,106 +39,74 @@ public class CarbonCANTalon extends CANTalon
 	
 	public void setRampEnabled(boolean enabled)
 	{
-		if(rampEnabled == enabled)
-		{
-			return;
-		}
-		
-		rampEnabled = enabled;
-		if(rampEnabled)
-		{
-			rampTimer.schedule(new RampTask(), 0, rampTime);
-		}
-		else
-		{
-			rampTimer.cancel();
-		}
+		ramp.setRampEnabled(enabled);
 	}
 	
 	public void setRampStep(double size)
 	{
-		if(size < 0)
-		{
-			size = 0;
-		}
-		
-		this.rampStep = size;
+		ramp.setRampStep(size);
 	}
 	
 	public double getRampStep()
 	{
-		return this.rampStep;
+		return ramp.getRampStep();
 	}
 	
 	public void setRampTime(long time)
 	{
-		if(time < 20)
-		{
-			time = 20;
-		}
-		
-		this.rampTime = time;
+		ramp.setRampTime(time);
 	}
 	
 	public long getRampTime()
 	{
-		return this.rampTime;
+		return ramp.getRampTime();
 	}
 	
 	/**
-	 * Sets motor speed, applying a ramp if
-	 * it's enabled.
+	 * @param unitsPerSecond The fastest the output may change.
 	 */
-	public void set(double power)
+	public void setSlewRate(double unitsPerSecond)
 	{
-		if(rampEnabled)
-		{
-			this.target = power;
-		}
-		else
-		{
-			_set(power);
-		}
+		ramp.setSlewRate(unitsPerSecond);
 	}
 	
-	//Calls super.set, use inside with ramp
-	private void _set(double power)
+	public double getSlewRate()
 	{
-		super.set(power);
+		return ramp.getSlewRate();
 	}
 	
 	/**
-	 * Thread that runs continuously in order to process the 
-	 * ramp of this CarbonCANTalon.
-	 * @author Nick Mosher, Team 1829 Carbonauts Captain
+	 * Smooths the start and end of each ramp with an S-curve.  Pass 0 to
+	 * turn either limit off.
+	 * @param accelLimit Largest change of the rate, in units per second squared.
+	 * @param jerkLimit Largest change of the acceleration, in units per
+	 * second cubed.
 	 */
-	public class RampTask extends TimerTask
+	public void setProfileLimits(double accelLimit, double jerkLimit)
 	{
-		private double currentOutput;
-		
-		@Override
-		public void run() 
+		ramp.setProfileLimits(accelLimit, jerkLimit);
+	}
+	
+	/**
+	 * @return The RampedMotor that drives this CarbonCANTalon.
+	 */
+	public RampedMotor getRamp()
+	{
+		return ramp;
+	}
+	
+	/**
+	 * Sets motor speed, applying a ramp if
+	 * it's enabled.
+	 */
+	public void set(double power)
+	{
+		if(ramp == null)
 		{
-			currentOutput = CarbonCANTalon.this.get();
-			if(rampEnabled) 
-			{
-                boolean isUp = (currentOutput < target);
-                double step = isUp ? RAMP_STEP : -RAMP_STEP;
-
-                if((isUp && (currentOutput + step >= target)) || (!isUp && (currentOutput + step <= target))) 
-                {
-                    currentOutput = target;
-                } 
-                else 
-                {
-                    currentOutput += step;
-                }
-                _set(currentOutput);
-	        }
-			else
-			{
-				RampTask.this.cancel();
-			}
+			//Called from the superclass constructor, before the ramp exists.
+			super.set(power);
+			return;
 		}
+		ramp.set(power);
 	}
 }
@@ -4,20 +4,48 @@
  */
 package com.team1829.library;
 
+import com.team1829.library.hal.DigitalSource;
+import com.team1829.library.metrics.CarbonMetrics;
+import com.team1829.library.metrics.Counter;
+
 import edu.wpi.first.wpilibj.DigitalInput;
 
 /**
  * Custom DigitalInput object that allows the inversion of the result
  * of the 'get' method by overriding it.  
+ * 
+ * For switches that chatter or pulses shorter than a loop, call
+ * startSampling() to have a DigitalSampler read the input in the
+ * background, debounce it, and keep every edge for the loop to drain.
  * @author Nick
  */
-public class CarbonDigitalInput extends DigitalInput 
+public class CarbonDigitalInput extends DigitalInput implements DigitalSource
 {
 	/**
 	 * Object property that specifies whether this CarbonDigitalInput is
 	 * inverted or not.
 	 */
-    private boolean inverted = false;
+    private volatile boolean inverted = false;
+    
+    /**
+     * ID of this input in the CarbonRecorder.
+     */
+    private int deviceId;
+    
+    /**
+     * Name of this input in the CarbonRecorder and CarbonMetrics.
+     */
+    private String name;
+    
+    /**
+     * Number of times this input has been read, in CarbonMetrics.
+     */
+    private Counter readMetric;
+    
+    /**
+     * Background sampler started by startSampling(), or null.
+     */
+    private DigitalSampler sampler;
     
     /**
      * Constructs a CarbonDigitalInput that acts identically to DigitalInput,
@@ -27,6 +55,7 @@ public class CarbonDigitalInput extends DigitalInput
     public CarbonDigitalInput(int channel) 
     {
         super(channel);
+        register("CarbonDigitalInput " + channel);
     }
     
     /**
@@ -40,6 +69,7 @@ public class CarbonDigitalInput extends DigitalInput
     {
         super(channel);
         this.inverted = inverted;
+        register("CarbonDigitalInput " + channel);
     }
     
     /**
@@ -48,7 +78,63 @@ public class CarbonDigitalInput extends DigitalInput
      */
     public boolean get() 
     {
-    	return this.inverted ? !super.get() : super.get();
+    	boolean raw = super.get();
+    	CarbonRecorder.record(deviceId, CarbonRecorder.TYPE_DIGITAL, 0, raw ? 1.0 : 0.0, inverted ? 1.0 : 0.0);
+    	if(readMetric != null)
+    	{
+    		readMetric.increment();
+    	}
+    	return this.inverted ? !raw : raw;
+    }
+    
+    /**
+     * Starts reading this input in the background.  The sampler sees the
+     * input after inversion, so its rising edges are get() going true.
+     * @param sampleRateHz How often to read the input, 1 to 5000 Hz.
+     * @param debounce How many readings in a row, net, it takes to change
+     * state.  1 for no debouncing.
+     * @return The sampler, for reading the debounced state and edges.
+     */
+    public synchronized DigitalSampler startSampling(int sampleRateHz, int debounce)
+    {
+    	stopSampling();
+    	sampler = new DigitalSampler(new DigitalSource()
+    	{
+    		public boolean get()
+    		{
+    			//Skips the recorder and metrics, which would see every reading.
+    			return CarbonDigitalInput.super.get() != inverted;
+    		}
+    	}, sampleRateHz, debounce, name + ".sampler");
+    	sampler.start();
+    	return sampler;
+    }
+    
+    /**
+     * Stops background reading.  The sampler's edges can still be drained.
+     */
+    public synchronized void stopSampling()
+    {
+    	if(sampler != null)
+    	{
+    		sampler.stop();
+    	}
+    }
+    
+    /**
+     * @return The sampler from the last startSampling(), or null.
+     */
+    public synchronized DigitalSampler getSampler()
+    {
+    	return sampler;
+    }
+    
+    //Registers this input with the recorder and metrics under 'name'.
+    private void register(String name)
+    {
+    	this.name = name;
+    	deviceId = CarbonRecorder.registerDevice(name);
+    	readMetric = CarbonMetrics.counter(name + ".reads");
     }
     
     /**
@@ -0,0 +1,417 @@
+package com.team1829.library;
+
+import com.team1829.library.hal.Clock;
+import com.team1829.library.hal.Hardware;
+
+/**
+ * This class provides a means to set a target value to ramp up or down
+ * to.  Unlike a fixed step per tick, the ramp works from the real time
+ * that has passed since it was last updated, so it moves at the same
+ * rate whether update() is called on time, late, in bunches, or inline
+ * from a set() call.
+ *
+ * By default the ramp is a plain slew-rate limit: the value moves
+ * toward the target at no more than 'slewRate' units per second.  If an
+ * acceleration limit is given the value also speeds up and slows down
+ * smoothly (a trapezoidal profile), and adding a jerk limit rounds the
+ * corners of that profile into an S-curve.
+ */
+public class CarbonRamp
+{
+	/**
+	 * Default slew rate in units per second, the same speed as the old
+	 * default of 0.05 every 20 milliseconds.
+	 */
+	public static final double DEFAULT_SLEW_RATE = 2.5;
+
+	/**
+	 * Longest slice of time integrated in one go when acceleration is
+	 * limited.  Longer gaps are split up so the profile stays accurate.
+	 */
+	public static final long MAX_STEP_NANOS = 5000000L;
+
+	/**
+	 * Longest gap the ramp will catch up on.  After a longer stall, such
+	 * as being disabled, the ramp carries on as if only this much time
+	 * had passed.
+	 */
+	public static final long MAX_ELAPSED_NANOS = 1000000000L;
+
+	//Bisection steps when working out how hard to brake.
+	private static final int BRAKE_ITERATIONS = 30;
+
+	private Clock clock;
+
+	private double slewRate;
+	private double accelLimit;
+	private double jerkLimit;
+
+	private double target;
+	private double value;
+	private double velocity;
+	private double acceleration;
+	private long lastTime;
+
+	//Scratch space for integrate(), so profile() doesn't allocate.
+	private double[] step = new double[3];
+	private double[] braking = new double[3];
+	private double[] stopping = new double[3];
+
+	/**
+	 * Creates a CarbonRamp starting at 0 with the default slew rate and
+	 * no acceleration limit, timed by the hardware clock.
+	 */
+	public CarbonRamp()
+	{
+		this(DEFAULT_SLEW_RATE);
+	}
+
+	/**
+	 * Creates a CarbonRamp starting at 0 with no acceleration limit,
+	 * timed by the hardware clock.
+	 * @param slewRate The fastest the value may change, in units per second.
+	 */
+	public CarbonRamp(double slewRate)
+	{
+		this(slewRate, Hardware.getClock());
+	}
+
+	/**
+	 * Creates a CarbonRamp starting at 0 with no acceleration limit.
+	 * @param slewRate The fastest the value may change, in units per second.
+	 * @param clock The clock to measure elapsed time with.
+	 */
+	public CarbonRamp(double slewRate, Clock clock)
+	{
+		this.clock = clock;
+		setSlewRate(slewRate);
+		accelLimit = 0.0;
+		jerkLimit = 0.0;
+		reset(0.0);
+	}
+
+	/**
+	 * @param slewRate The fastest the value may change, in units per second.
+	 */
+	public synchronized void setSlewRate(double slewRate)
+	{
+		if(slewRate < 0)
+		{
+			slewRate = 0;
+		}
+		this.slewRate = slewRate;
+	}
+
+	public synchronized double getSlewRate()
+	{
+		return slewRate;
+	}
+
+	/**
+	 * Turns on the smooth profile.  Pass 0 for either limit to turn that
+	 * limit off.
+	 * @param accelLimit The largest rate of change of the slew, in units
+	 * per second squared.
+	 * @param jerkLimit The largest rate of change of the acceleration, in
+	 * units per second cubed.  Only used with an acceleration limit.
+	 */
+	public synchronized void setProfileLimits(double accelLimit, double jerkLimit)
+	{
+		this.accelLimit = accelLimit > 0 ? accelLimit : 0.0;
+		this.jerkLimit = jerkLimit > 0 ? jerkLimit : 0.0;
+		if(this.accelLimit == 0.0)
+		{
+			velocity = 0.0;
+			acceleration = 0.0;
+		}
+	}
+
+	public synchronized double getAccelerationLimit()
+	{
+		return accelLimit;
+	}
+
+	public synchronized double getJerkLimit()
+	{
+		return jerkLimit;
+	}
+
+	/**
+	 * @param target The value to ramp toward.
+	 */
+	public synchronized void setTarget(double target)
+	{
+		this.target = target;
+	}
+
+	public synchronized double getTarget()
+	{
+		return target;
+	}
+
+	/**
+	 * @return The value as of the last update().
+	 */
+	public synchronized double getValue()
+	{
+		return value;
+	}
+
+	/**
+	 * @return True once the value has reached the target.
+	 */
+	public synchronized boolean isDone()
+	{
+		return value == target;
+	}
+
+	/**
+	 * Jumps straight to 'value' with the ramp at rest, and makes it the
+	 * target.  Use this when the output has been driven some other way
+	 * and the ramp should pick up from there.
+	 * @param value The value to start from.
+	 */
+	public synchronized void reset(double value)
+	{
+		this.value = value;
+		this.target = value;
+		velocity = 0.0;
+		acceleration = 0.0;
+		lastTime = clock.nanoTime();
+	}
+
+	/**
+	 * Moves the value toward the target by however much time has passed
+	 * since the last update.
+	 * @return The new value.
+	 */
+	public synchronized double update()
+	{
+		long now = clock.nanoTime();
+		long elapsed = now - lastTime;
+		lastTime = now;
+		if(elapsed <= 0)
+		{
+			return value;
+		}
+		if(elapsed > MAX_ELAPSED_NANOS)
+		{
+			elapsed = MAX_ELAPSED_NANOS;
+		}
+
+		if(accelLimit == 0.0)
+		{
+			slew(elapsed * 1e-9);
+		}
+		else
+		{
+			while(elapsed > 0 && value != target)
+			{
+				long step = elapsed < MAX_STEP_NANOS ? elapsed : MAX_STEP_NANOS;
+				profile(step * 1e-9);
+				elapsed -= step;
+			}
+		}
+		return value;
+	}
+
+	//Plain slew-rate limit.
+	private void slew(double dt)
+	{
+		double maxChange = slewRate * dt;
+		double error = target - value;
+		if(Math.abs(error) <= maxChange)
+		{
+			value = target;
+		}
+		else
+		{
+			value += error > 0 ? maxChange : -maxChange;
+		}
+	}
+
+	//Acceleration limited profile, with an optional jerk limit.
+	private void profile(double dt)
+	{
+		double error = target - value;
+		double direction = error > 0 ? 1.0 : -1.0;
+		double distance = Math.abs(error);
+
+		//Work in the direction of travel, so 'speed' is positive when
+		//heading toward the target.
+		double speed = velocity * direction;
+		double accel = acceleration * direction;
+		boolean approaching = speed > 0.0;
+		double moved;
+		if(jerkLimit > 0.0)
+		{
+			double wanted = cruiseAccel(speed, accel);
+			integrate(speed, accel, towards(accel, wanted, jerkLimit * dt), dt, step);
+
+			//Brake once carrying on for another step would leave less room
+			//than it takes to stop from where that step ends up.
+			if(speed > 0.0 && step[0] + stoppingDistance(step[1], step[2]) >= distance)
+			{
+				integrate(speed, accel, brakeAccel(speed, accel, step[2], distance, dt), dt, step);
+			}
+			moved = step[0];
+			speed = step[1];
+			accel = step[2];
+		}
+		else
+		{
+			//The fastest we can be going and still stop at the target,
+			//slowing by accelLimit * dt each step: n steps from rest cover
+			//n(n+1)/2 * accelLimit * dt^2.
+			double steps = (Math.sqrt(1.0 + 8.0 * distance / (accelLimit * dt * dt)) - 1.0) / 2.0;
+			double desired = Math.min(slewRate, steps * accelLimit * dt);
+			//The last step lands exactly rather than passing the target.
+			desired = Math.min(desired, distance / dt);
+			accel = clamp((desired - speed) / dt, accelLimit);
+			speed += accel * dt;
+			moved = speed * dt;
+		}
+
+		value += direction * moved;
+		velocity = direction * speed;
+		acceleration = direction * accel;
+		if(jerkLimit > 0.0 && approaching && speed <= 0.0 && accel <= 0.0)
+		{
+			//Braked to a stop.  Whatever is left is less than one step can
+			//resolve, so settle on the target; if more is left, start over
+			//from rest.
+			velocity = 0.0;
+			acceleration = 0.0;
+			if(distance - moved <= jerkLimit * dt * dt * dt)
+			{
+				value = target;
+			}
+		}
+
+		//Only reached when a step is too coarse to brake exactly: land on
+		//the target rather than overshoot it.
+		if((direction > 0 && value >= target) || (direction < 0 && value <= target))
+		{
+			value = target;
+			velocity = 0.0;
+			acceleration = 0.0;
+		}
+	}
+
+	//Acceleration to aim for while speeding up or cruising: full
+	//acceleration, eased off so it is back to 0 as the slew rate is met.
+	private double cruiseAccel(double speed, double accel)
+	{
+		if(speed > slewRate)
+		{
+			return -accelLimit;
+		}
+		if(accel > 0.0 && speed + accel * accel / (2.0 * jerkLimit) >= slewRate)
+		{
+			return 0.0;
+		}
+		return accelLimit;
+	}
+
+	//Acceleration to end a braking step with: the one that leaves exactly
+	//enough room to stop, found by bisection between braking as hard as
+	//the jerk limit allows and 'cruise', which was found to overshoot.
+	private double brakeAccel(double speed, double accel, double cruise, double distance, double dt)
+	{
+		double low = Math.max(-accelLimit, accel - jerkLimit * dt);
+		//Within a step of the point where winding the deceleration back
+		//to 0 at the jerk limit only just stops in time.
+		if(accel < 0.0 && speed <= (accel * accel + jerkLimit * jerkLimit * dt * dt) / (2.0 * jerkLimit))
+		{
+			//Time to ease off: the steady jerk that brings the speed and
+			//acceleration to 0 together.
+			double jerk = Math.min(jerkLimit, accel * accel / (2.0 * speed));
+			return Math.min(0.0, accel + jerk * dt);
+		}
+
+		double high = cruise;
+		integrate(speed, accel, low, dt, braking);
+		if(braking[0] + stoppingDistance(braking[1], braking[2]) >= distance)
+		{
+			//Can't stop in time even braking hard; the overshoot check in
+			//profile() will catch it.
+			return low;
+		}
+		for(int i = 0; i < BRAKE_ITERATIONS; i++)
+		{
+			double middle = (low + high) / 2.0;
+			integrate(speed, accel, middle, dt, braking);
+			if(braking[0] + stoppingDistance(braking[1], braking[2]) >= distance)
+			{
+				high = middle;
+			}
+			else
+			{
+				low = middle;
+			}
+		}
+		return low;
+	}
+
+	//How far it takes to stop from 'speed' with acceleration 'accel' under
+	//the jerk limit: wind the acceleration down to some deceleration, hold
+	//it, then wind it back up to 0 as the speed reaches 0.
+	private double stoppingDistance(double speed, double accel)
+	{
+		if(speed <= 0.0)
+		{
+			return 0.0;
+		}
+		//Deepest deceleration needed, if it never has to be held.
+		double deepest = -Math.sqrt((accel * accel + 2.0 * jerkLimit * speed) / 2.0);
+		double hold = 0.0;
+		if(deepest < -accelLimit)
+		{
+			deepest = -accelLimit;
+			hold = (speed + (accel * accel - 2.0 * accelLimit * accelLimit) / (2.0 * jerkLimit)) / accelLimit;
+		}
+		if(deepest > accel)
+		{
+			//Already braking harder than needed; just wind back up.
+			deepest = accel;
+		}
+
+		double[] state = stopping;
+		integrate(speed, accel, deepest, (accel - deepest) / jerkLimit, state);
+		double distance = state[0];
+		integrate(state[1], deepest, deepest, Math.max(hold, 0.0), state);
+		distance += state[0];
+		integrate(state[1], deepest, 0.0, -deepest / jerkLimit, state);
+		return distance + state[0];
+	}
+
+	//Moves 'accel' toward 'wanted' by at most 'maxChange'.
+	private static double towards(double accel, double wanted, double maxChange)
+	{
+		return accel + clamp(wanted - accel, maxChange);
+	}
+
+	//Runs one stretch with the acceleration changing steadily from
+	//'accel' to 'nextAccel' over 'dt' seconds.  Puts the distance moved,
+	//the new speed, and the new acceleration into 'result'.
+	private static void integrate(double speed, double accel, double nextAccel, double dt, double[] result)
+	{
+		double jerk = dt > 0.0 ? (nextAccel - accel) / dt : 0.0;
+		result[0] = speed * dt + accel * dt * dt / 2.0 + jerk * dt * dt * dt / 6.0;
+		result[1] = speed + accel * dt + jerk * dt * dt / 2.0;
+		result[2] = nextAccel;
+	}
+
+	private static double clamp(double value, double limit)
+	{
+		if(value > limit)
+		{
+			return limit;
+		}
+		if(value < -limit)
+		{
+			return -limit;
+		}
+		return value;
+	}
+}
@@ -0,0 +1,444 @@
+package com.team1829.library;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.team1829.library.hal.Clock;
+import com.team1829.library.hal.Hardware;
+
+/**
+ * Binary flight recorder for every Carbon device.  Devices write small
+ * fixed-size records (a timestamp, the device's ID, a record type, a
+ * channel, and two values) into memory-mapped log segments.
+ *
+ * Writing a record never allocates, never locks, and never makes a
+ * system call: a writer claims a slot with one atomic increment and
+ * fills it in with absolute puts into a segment that was mapped ahead
+ * of time.  A background thread maps the next segment before it is
+ * needed, and flushes and lets go of segments that are finished.  If
+ * the writers ever get ahead of the background thread the record is
+ * dropped and counted rather than making the writer wait.
+ *
+ * Devices register a name once when they are made and get back an ID
+ * that is stored in every record.  The names are written next to the
+ * segments in devices.txt so a log can be read back without the code
+ * that produced it.
+ *
+ * Recording is off until start() is called.  While it is off, record()
+ * costs one volatile read.
+ */
+public class CarbonRecorder
+{
+	/**
+	 * Size of one record in bytes.
+	 */
+	public static final int RECORD_SIZE = 32;
+
+	/*
+	 * Offsets of each field within a record.  The type is written last
+	 * so a reader can treat a zero type as a slot that was never filled.
+	 */
+	public static final int OFFSET_TIMESTAMP = 0;
+	public static final int OFFSET_DEVICE = 8;
+	public static final int OFFSET_TYPE = 10;
+	public static final int OFFSET_CHANNEL = 12;
+	public static final int OFFSET_VALUE_A = 16;
+	public static final int OFFSET_VALUE_B = 24;
+
+	/*
+	 * Record types.
+	 */
+	/** A motor output was computed.  A: target, B: output. */
+	public static final short TYPE_MOTOR = 1;
+	/** An analog reading was taken.  A: raw, B: filtered. */
+	public static final short TYPE_ANALOG = 2;
+	/** A digital input was read.  A: 1 or 0. */
+	public static final short TYPE_DIGITAL = 3;
+	/** A solenoid was commanded.  A: 1 or 0. */
+	public static final short TYPE_SOLENOID = 4;
+	/** A button was read.  Channel: port * 256 + ID.  A: 1 or 0. */
+	public static final short TYPE_BUTTON = 5;
+	/** An axis was read.  Channel: port * 256 + ID.  A: position. */
+	public static final short TYPE_AXIS = 6;
+
+	/**
+	 * Default size of one segment file, 4MB or 131072 records.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * How often the background thread checks that the segments ahead of
+	 * the writers are mapped, in milliseconds.
+	 */
+	public static final long MAP_PERIOD = 10;
+
+	/**
+	 * How often the segment being written is flushed to disk, in
+	 * milliseconds.
+	 */
+	public static final long FLUSH_PERIOD = 100;
+
+	/**
+	 * Number of segments that can be mapped at once: the one just
+	 * finished, the one being written, and two ahead.
+	 */
+	private static final int SEGMENT_SLOTS = 4;
+
+	private static final List<String> deviceNames = new ArrayList<String>();
+	private static volatile CarbonRecorder active;
+
+	private File directory;
+	private int recordsPerSegment;
+	private Clock clock;
+	private AtomicLong nextRecord;
+	private AtomicLong dropped;
+	private AtomicReferenceArray<Segment> segments;
+	private PrintWriter deviceFile;
+	private Thread flusher;
+	private volatile boolean running;
+	private long retired;
+
+	/**
+	 * Registers a device so its records can be told apart.  Can be called
+	 * whether or not a recorder is running.
+	 * @param name A name for the device, such as "CarbonTalon 3".
+	 * @return The ID to pass to record().
+	 */
+	public static int registerDevice(String name)
+	{
+		int id;
+		CarbonRecorder recorder;
+		synchronized(deviceNames)
+		{
+			id = deviceNames.size();
+			deviceNames.add(name);
+			recorder = active;
+		}
+		if(recorder != null)
+		{
+			recorder.writeDeviceName(id, name);
+		}
+		return id;
+	}
+
+	/**
+	 * @param id A device ID returned by registerDevice().
+	 * @return The name it was registered with, or null.
+	 */
+	public static String getDeviceName(int id)
+	{
+		synchronized(deviceNames)
+		{
+			return id >= 0 && id < deviceNames.size() ? deviceNames.get(id) : null;
+		}
+	}
+
+	/**
+	 * @return The running recorder, or null if none is running.
+	 */
+	public static CarbonRecorder getActive()
+	{
+		return active;
+	}
+
+	/**
+	 * Writes a record to the running recorder, if there is one.
+	 * @param device The device's ID from registerDevice().
+	 * @param type One of the TYPE_ constants.
+	 * @param channel A type-specific channel number.
+	 * @param a The first value.
+	 * @param b The second value.
+	 */
+	public static void record(int device, short type, int channel, double a, double b)
+	{
+		CarbonRecorder recorder = active;
+		if(recorder != null)
+		{
+			recorder.write(device, type, channel, a, b);
+		}
+	}
+
+	/**
+	 * Starts recording into 'directory' with the default segment size,
+	 * replacing any recorder that is already running.
+	 * @param directory Where to put the segment files.
+	 * @return The new recorder.
+	 * @throws IOException If the directory or first segment can't be made.
+	 */
+	public static CarbonRecorder start(File directory) throws IOException
+	{
+		return start(directory, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Starts recording into 'directory', replacing any recorder that is
+	 * already running.
+	 * @param directory Where to put the segment files.
+	 * @param segmentSize Size of each segment file in bytes.
+	 * @return The new recorder.
+	 * @throws IOException If the directory or first segment can't be made.
+	 */
+	public static CarbonRecorder start(File directory, int segmentSize) throws IOException
+	{
+		CarbonRecorder recorder = new CarbonRecorder(directory, segmentSize);
+		synchronized(deviceNames)
+		{
+			CarbonRecorder old = active;
+			if(old != null)
+			{
+				old.stop();
+			}
+			for(int i = 0; i < deviceNames.size(); i++)
+			{
+				recorder.writeDeviceName(i, deviceNames.get(i));
+			}
+			active = recorder;
+		}
+		recorder.flusher.start();
+		return recorder;
+	}
+
+	private CarbonRecorder(File directory, int segmentSize) throws IOException
+	{
+		if(!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException("Could not create " + directory);
+		}
+		this.directory = directory;
+		this.recordsPerSegment = Math.max(segmentSize / RECORD_SIZE, 1);
+		this.clock = Hardware.getClock();
+		nextRecord = new AtomicLong(0);
+		dropped = new AtomicLong(0);
+		segments = new AtomicReferenceArray<Segment>(SEGMENT_SLOTS);
+		deviceFile = new PrintWriter(new FileWriter(new File(directory, "devices.txt")));
+		retired = 0;
+
+		//Map the first segments now so recording can start at once.
+		mapSegment(0);
+		mapSegment(1);
+		mapSegment(2);
+
+		running = true;
+		flusher = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				flushLoop();
+			}
+		}, "CarbonRecorder");
+		flusher.setDaemon(true);
+	}
+
+	/**
+	 * Writes one record.  Usually called through the static record().
+	 */
+	public void write(int device, short type, int channel, double a, double b)
+	{
+		long index = nextRecord.getAndIncrement();
+		long number = index / recordsPerSegment;
+		Segment segment = segments.get((int)(number % SEGMENT_SLOTS));
+		if(segment == null || segment.number != number)
+		{
+			//The background thread hasn't caught up; don't wait for it.
+			dropped.incrementAndGet();
+			return;
+		}
+
+		int offset = (int)(index - number * recordsPerSegment) * RECORD_SIZE;
+		MappedByteBuffer buffer = segment.buffer;
+		buffer.putLong(offset + OFFSET_TIMESTAMP, clock.nanoTime());
+		buffer.putShort(offset + OFFSET_DEVICE, (short)device);
+		buffer.putInt(offset + OFFSET_CHANNEL, channel);
+		buffer.putDouble(offset + OFFSET_VALUE_A, a);
+		buffer.putDouble(offset + OFFSET_VALUE_B, b);
+		buffer.putShort(offset + OFFSET_TYPE, type);
+	}
+
+	/**
+	 * Stops recording, flushes everything written so far to disk, and
+	 * closes the files.
+	 */
+	public void stop()
+	{
+		synchronized(deviceNames)
+		{
+			if(active == this)
+			{
+				active = null;
+			}
+		}
+		running = false;
+		flusher.interrupt();
+		try
+		{
+			flusher.join();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		for(int i = 0; i < SEGMENT_SLOTS; i++)
+		{
+			Segment segment = segments.getAndSet(i, null);
+			if(segment != null)
+			{
+				segment.close();
+			}
+		}
+		synchronized(this)
+		{
+			deviceFile.close();
+		}
+	}
+
+	/**
+	 * @return The number of records written so far, including dropped ones.
+	 */
+	public long getRecordCount()
+	{
+		return nextRecord.get();
+	}
+
+	/**
+	 * @return The number of records dropped because no segment was ready.
+	 */
+	public long getDroppedCount()
+	{
+		return dropped.get();
+	}
+
+	/**
+	 * @return The directory the segments are written to.
+	 */
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	/**
+	 * @param directory The directory a recorder writes to.
+	 * @param number A segment number, starting at 0.
+	 * @return The file that segment is written to.
+	 */
+	public static File getSegmentFile(File directory, long number)
+	{
+		return new File(directory, String.format("segment-%05d.bin", number));
+	}
+
+	private synchronized void writeDeviceName(int id, String name)
+	{
+		deviceFile.println(id + "\t" + name);
+		deviceFile.flush();
+	}
+
+	//Maps segment 'number' into its slot.
+	private void mapSegment(long number) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(getSegmentFile(directory, number), "rw");
+		long size = (long)recordsPerSegment * RECORD_SIZE;
+		file.setLength(size);
+		MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		segments.set((int)(number % SEGMENT_SLOTS), new Segment(number, file, buffer));
+	}
+
+	//Run by the background thread until stop().
+	private void flushLoop()
+	{
+		long lastFlush = System.currentTimeMillis();
+		while(running)
+		{
+			try
+			{
+				long current = nextRecord.get() / recordsPerSegment;
+
+				//Keep the next two segments mapped ahead of the writers.
+				for(long n = current; n <= current + 2; n++)
+				{
+					Segment segment = segments.get((int)(n % SEGMENT_SLOTS));
+					if(segment == null || segment.number != n)
+					{
+						if(segment != null)
+						{
+							segment.close();
+						}
+						mapSegment(n);
+					}
+				}
+
+				//Anything two or more segments back has had time to finish.
+				while(retired < current - 1)
+				{
+					Segment segment = segments.get((int)(retired % SEGMENT_SLOTS));
+					if(segment != null && segment.number == retired)
+					{
+						segments.compareAndSet((int)(retired % SEGMENT_SLOTS), segment, null);
+						segment.close();
+					}
+					retired++;
+				}
+
+				long now = System.currentTimeMillis();
+				if(now - lastFlush >= FLUSH_PERIOD)
+				{
+					Segment segment = segments.get((int)(current % SEGMENT_SLOTS));
+					if(segment != null && segment.number == current)
+					{
+						segment.buffer.force();
+					}
+					lastFlush = now;
+				}
+
+				Thread.sleep(MAP_PERIOD);
+			}
+			catch(InterruptedException e)
+			{
+				//stop() interrupts to wake us up; the loop checks 'running'.
+			}
+			catch(IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * One mapped segment file.
+	 */
+	private static class Segment
+	{
+		private final long number;
+		private final RandomAccessFile file;
+		private final MappedByteBuffer buffer;
+
+		public Segment(long number, RandomAccessFile file, MappedByteBuffer buffer)
+		{
+			this.number = number;
+			this.file = file;
+			this.buffer = buffer;
+		}
+
+		public void close()
+		{
+			buffer.force();
+			try
+			{
+				file.close();
+			}
+			catch(IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+}
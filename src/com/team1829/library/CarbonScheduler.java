@@ -0,0 +1,534 @@
+package com.team1829.library;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.team1829.library.hal.Clock;
+import com.team1829.library.hal.SystemClock;
+import com.team1829.library.metrics.CarbonMetrics;
+import com.team1829.library.metrics.Counter;
+import com.team1829.library.metrics.LatencyHistogram;
+
+/**
+ * Library-wide periodic scheduler.  Rather than every device spawning
+ * its own java.util.Timer (and therefore its own thread), all periodic
+ * work such as ramping and smoothing is registered here and run on a
+ * single shared thread.
+ *
+ * Tasks that share a period are grouped into one tick, so ten devices
+ * running every 20ms cost one wakeup every 20ms instead of ten.  Each
+ * task keeps track of how late it ran (jitter) and how many times it
+ * took longer than its own period to finish (overruns).  The same
+ * numbers go to CarbonMetrics as histograms under the task's name, so
+ * p50/p99/max can be reported across every task at once.
+ *
+ * Call shutdown() to stop every task cleanly, for example when the
+ * robot program is exiting.
+ *
+ * A scheduler made with a Clock instead of a thread count has no thread
+ * at all.  Its tasks only run when runPending() is called, which lets a
+ * simulation step every device in lockstep with a SimClock.
+ */
+public class CarbonScheduler
+{
+	/**
+	 * Number of threads in the shared pool.  One is plenty for the
+	 * short tasks this library runs and leaves the other core to the
+	 * main robot loop.
+	 */
+	public static final int DEFAULT_THREAD_COUNT = 1;
+
+	private static CarbonScheduler instance;
+
+	private ScheduledExecutorService executor;
+	private Clock clock;
+	private Map<Long, PeriodGroup> groups;
+	private List<PeriodGroup> groupList;
+	private volatile boolean shutdown;
+
+	/**
+	 * Returns the shared CarbonScheduler used by every Carbon device,
+	 * creating it on first use.
+	 * @return The library-wide scheduler.
+	 */
+	public static synchronized CarbonScheduler getInstance()
+	{
+		if(instance == null || instance.isShutdown())
+		{
+			instance = new CarbonScheduler(DEFAULT_THREAD_COUNT);
+		}
+		return instance;
+	}
+	
+	/**
+	 * Replaces the shared CarbonScheduler.  Devices made after this call
+	 * schedule their tasks on the new one.  Mostly useful for installing
+	 * a manual scheduler in a simulation.
+	 * @param scheduler The scheduler for devices to use.
+	 */
+	public static synchronized void setInstance(CarbonScheduler scheduler)
+	{
+		instance = scheduler;
+	}
+
+	/**
+	 * Creates a CarbonScheduler backed by the given number of threads.
+	 * Most code should use getInstance() rather than making its own.
+	 * @param threads The number of threads in the pool.
+	 */
+	public CarbonScheduler(int threads)
+	{
+		if(threads < 1)
+		{
+			threads = 1;
+		}
+		executor = Executors.newScheduledThreadPool(threads, new ThreadFactory()
+		{
+			private int count = 0;
+
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "CarbonScheduler-" + (count++));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		clock = SystemClock.INSTANCE;
+		groups = new HashMap<Long, PeriodGroup>();
+		groupList = new CopyOnWriteArrayList<PeriodGroup>();
+		shutdown = false;
+	}
+	
+	/**
+	 * Creates a manual CarbonScheduler with no thread of its own.  Tasks
+	 * run only when runPending() is called, using 'clock' to decide
+	 * which are due.
+	 * @param clock The clock to schedule against.
+	 */
+	public CarbonScheduler(Clock clock)
+	{
+		this.executor = null;
+		this.clock = clock;
+		groups = new HashMap<Long, PeriodGroup>();
+		groupList = new CopyOnWriteArrayList<PeriodGroup>();
+		shutdown = false;
+	}
+	
+	/**
+	 * Runs every task that has come due on a manual scheduler, catching
+	 * up on any periods that were skipped since the last call.  Has no
+	 * effect on a threaded scheduler, which runs tasks on its own.
+	 */
+	public void runPending()
+	{
+		if(executor != null)
+		{
+			return;
+		}
+		for(PeriodGroup group : groupList)
+		{
+			while(!shutdown && clock.nanoTime() - group.nextRun >= 0 && !group.tasks.isEmpty())
+			{
+				group.run();
+			}
+		}
+	}
+
+	/**
+	 * Schedules a task to run every 'period' milliseconds.
+	 * @param task The work to run.
+	 * @param period The time between runs in milliseconds.
+	 * @return A handle used to cancel the task or read its statistics.
+	 */
+	public ScheduledTask schedule(Runnable task, long period)
+	{
+		return schedule(task, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Schedules a task to run every 'period' milliseconds, with its
+	 * metrics kept under 'name'.
+	 * @param task The work to run.
+	 * @param period The time between runs in milliseconds.
+	 * @param name The name to keep metrics under, such as "CarbonTalon 3".
+	 * @return A handle used to cancel the task or read its statistics.
+	 */
+	public ScheduledTask schedule(Runnable task, long period, String name)
+	{
+		return schedule(task, period, TimeUnit.MILLISECONDS, name);
+	}
+
+	/**
+	 * Schedules a task to run at a fixed rate, with its metrics kept
+	 * under the name of the task's class.
+	 * @param task The work to run.
+	 * @param period The time between runs.
+	 * @param unit The unit of 'period'.
+	 * @return A handle used to cancel the task or read its statistics.
+	 */
+	public ScheduledTask schedule(Runnable task, long period, TimeUnit unit)
+	{
+		String name = task.getClass().getSimpleName();
+		return schedule(task, period, unit, name.length() > 0 ? name : "Task");
+	}
+
+	/**
+	 * Schedules a task to run at a fixed rate.  Tasks with identical
+	 * periods are run back to back in the same tick.
+	 *
+	 * How long the task takes and how late it starts are recorded in
+	 * the CarbonMetrics histograms 'name'.run and 'name'.late, and
+	 * overruns are counted in 'name'.overruns.  Tasks given the same
+	 * name share them.
+	 * @param task The work to run.
+	 * @param period The time between runs.
+	 * @param unit The unit of 'period'.
+	 * @param name The name to keep metrics under.
+	 * @return A handle used to cancel the task or read its statistics.
+	 */
+	public synchronized ScheduledTask schedule(Runnable task, long period, TimeUnit unit, String name)
+	{
+		if(shutdown)
+		{
+			throw new IllegalStateException("CarbonScheduler has been shut down!");
+		}
+
+		long periodNanos = unit.toNanos(period);
+		if(periodNanos < 1)
+		{
+			periodNanos = 1;
+		}
+
+		PeriodGroup group = groups.get(periodNanos);
+		if(group == null)
+		{
+			group = new PeriodGroup(periodNanos);
+			groups.put(periodNanos, group);
+			groupList.add(group);
+			group.start();
+		}
+
+		ScheduledTask scheduled = new ScheduledTask(task, group, name);
+		group.tasks.add(scheduled);
+		return scheduled;
+	}
+
+	/**
+	 * Stops the given task.  Same as calling task.cancel().
+	 * @param task The task to stop.
+	 */
+	public void cancel(ScheduledTask task)
+	{
+		if(task != null)
+		{
+			task.cancel();
+		}
+	}
+
+	/**
+	 * Returns every task currently scheduled.  Useful for dumping
+	 * jitter and overrun numbers at the end of a match.
+	 * @return A snapshot of the scheduled tasks.
+	 */
+	public synchronized List<ScheduledTask> getTasks()
+	{
+		List<ScheduledTask> tasks = new ArrayList<ScheduledTask>();
+		for(PeriodGroup group : groups.values())
+		{
+			tasks.addAll(group.tasks);
+		}
+		return tasks;
+	}
+
+	/**
+	 * Cancels every task and stops the scheduler thread.  Any task that
+	 * is in the middle of running is allowed to finish.
+	 */
+	public synchronized void shutdown()
+	{
+		if(shutdown)
+		{
+			return;
+		}
+		shutdown = true;
+		for(PeriodGroup group : groups.values())
+		{
+			for(ScheduledTask task : group.tasks)
+			{
+				task.cancelled = true;
+			}
+			group.tasks.clear();
+		}
+		groups.clear();
+		groupList.clear();
+		if(executor != null)
+		{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Waits for the scheduler thread to finish after shutdown().
+	 * @param timeout The longest time to wait, in milliseconds.
+	 * @return True if the scheduler stopped before the timeout.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	public boolean awaitTermination(long timeout) throws InterruptedException
+	{
+		if(executor == null)
+		{
+			return true;
+		}
+		return executor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return True if shutdown() has been called.
+	 */
+	public synchronized boolean isShutdown()
+	{
+		return shutdown;
+	}
+
+	//Called by a group once its last task has been cancelled.
+	private synchronized void removeGroup(PeriodGroup group)
+	{
+		if(group.tasks.isEmpty() && groups.get(group.period) == group)
+		{
+			groups.remove(group.period);
+			groupList.remove(group);
+			group.stop();
+		}
+	}
+
+	/**
+	 * A single fixed-rate tick shared by every task with the same period.
+	 */
+	private class PeriodGroup implements Runnable
+	{
+		private final long period;
+		private final List<ScheduledTask> tasks;
+		private ScheduledFuture<?> future;
+		private long nextRun;
+
+		public PeriodGroup(long period)
+		{
+			this.period = period;
+			this.tasks = new CopyOnWriteArrayList<ScheduledTask>();
+		}
+
+		public void start()
+		{
+			nextRun = clock.nanoTime();
+			if(executor != null)
+			{
+				future = executor.scheduleAtFixedRate(this, 0L, period, TimeUnit.NANOSECONDS);
+			}
+		}
+
+		public void stop()
+		{
+			if(future != null)
+			{
+				future.cancel(false);
+			}
+		}
+
+		public void run()
+		{
+			long expected = nextRun;
+			nextRun += period;
+
+			for(ScheduledTask task : tasks)
+			{
+				task.execute(expected, period);
+			}
+		}
+	}
+
+	/**
+	 * Handle to a task registered with the CarbonScheduler.  Keeps
+	 * timing statistics for the task and allows it to be cancelled.
+	 */
+	public class ScheduledTask
+	{
+		private final Runnable task;
+		private final PeriodGroup group;
+		private final String name;
+		private final LatencyHistogram runMetric;
+		private final LatencyHistogram lateMetric;
+		private final Counter overrunMetric;
+		private volatile boolean cancelled;
+
+		private volatile long runCount;
+		private volatile long overrunCount;
+		private volatile long lastJitter;
+		private volatile long maxJitter;
+		private volatile long lastDuration;
+		private volatile long maxDuration;
+
+		private ScheduledTask(Runnable task, PeriodGroup group, String name)
+		{
+			this.task = task;
+			this.group = group;
+			this.name = name;
+			this.runMetric = CarbonMetrics.histogram(name + ".run");
+			this.lateMetric = CarbonMetrics.histogram(name + ".late");
+			this.overrunMetric = CarbonMetrics.counter(name + ".overruns");
+			this.cancelled = false;
+		}
+
+		//Runs the task once and records how late and how long it was.
+		private void execute(long expected, long period)
+		{
+			if(cancelled)
+			{
+				return;
+			}
+
+			long start = clock.nanoTime();
+			try
+			{
+				task.run();
+			}
+			catch(Throwable e)
+			{
+				//Never let one device kill the shared thread.  An Error that
+				//got out would make the executor silently drop every task
+				//sharing this period, so catch those too.
+				System.out.println("Scheduled task " + name + " threw " + e + "!");
+				e.printStackTrace();
+			}
+			long end = clock.nanoTime();
+
+			long jitter = start - expected;
+			long duration = end - start;
+			lastJitter = jitter;
+			if(jitter > maxJitter)
+			{
+				maxJitter = jitter;
+			}
+			lastDuration = duration;
+			if(duration > maxDuration)
+			{
+				maxDuration = duration;
+			}
+			if(end - expected > period)
+			{
+				overrunCount++;
+				overrunMetric.increment();
+			}
+			runCount++;
+			runMetric.record(duration);
+			lateMetric.record(jitter);
+		}
+
+		/**
+		 * Stops this task from running again.
+		 */
+		public void cancel()
+		{
+			if(cancelled)
+			{
+				return;
+			}
+			cancelled = true;
+			group.tasks.remove(this);
+			removeGroup(group);
+		}
+
+		/**
+		 * @return True if this task has been cancelled.
+		 */
+		public boolean isCancelled()
+		{
+			return cancelled;
+		}
+
+		/**
+		 * @return The name this task's metrics are kept under.
+		 */
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * @return The period of this task in nanoseconds.
+		 */
+		public long getPeriod()
+		{
+			return group.period;
+		}
+
+		/**
+		 * @return The number of times this task has run.
+		 */
+		public long getRunCount()
+		{
+			return runCount;
+		}
+
+		/**
+		 * @return The number of runs that finished later than one period
+		 * after they were due.
+		 */
+		public long getOverrunCount()
+		{
+			return overrunCount;
+		}
+
+		/**
+		 * @return How late the most recent run started, in nanoseconds.
+		 */
+		public long getLastJitter()
+		{
+			return lastJitter;
+		}
+
+		/**
+		 * @return The latest any run has started, in nanoseconds.
+		 */
+		public long getMaxJitter()
+		{
+			return maxJitter;
+		}
+
+		/**
+		 * @return How long the most recent run took, in nanoseconds.
+		 */
+		public long getLastDuration()
+		{
+			return lastDuration;
+		}
+
+		/**
+		 * @return The longest any run has taken, in nanoseconds.
+		 */
+		public long getMaxDuration()
+		{
+			return maxDuration;
+		}
+
+		/**
+		 * Clears the jitter, duration, and overrun statistics.
+		 */
+		public void resetStatistics()
+		{
+			runCount = 0;
+			overrunCount = 0;
+			lastJitter = 0;
+			maxJitter = 0;
+			lastDuration = 0;
+			maxDuration = 0;
+		}
+	}
+}
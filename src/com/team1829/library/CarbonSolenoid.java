@@ -4,17 +4,45 @@
  */
 package com.team1829.library;
 
+import com.team1829.library.hal.SolenoidOutput;
+import com.team1829.library.metrics.CarbonMetrics;
+import com.team1829.library.metrics.Counter;
+
 import edu.wpi.first.wpilibj.Solenoid;
 
 /**
  * Carbonaut's own Solenoid object, with added constructors to invert 'get()'
  * and 'set()'
+ * 
+ * The last state written is remembered, so setting the same state every
+ * loop only goes out to the solenoid module the first time, and get()
+ * answers without asking the module.  To write many solenoids on one
+ * module together, or to drive a double solenoid, use a SolenoidBank.
  * @author Nick Mosher, Team 1829 Carbonauts Captain
  */
-public class CarbonSolenoid extends Solenoid 
+public class CarbonSolenoid extends Solenoid implements SolenoidOutput
 {    
     private boolean inverted = false;
     
+    /**
+     * ID of this solenoid in the CarbonRecorder.
+     */
+    private int deviceId;
+    
+    /**
+     * The state last written to the solenoid, after inverting, and
+     * whether anything has been written yet.
+     */
+    private boolean written;
+    private boolean output;
+    
+    /**
+     * Number of sets written to the solenoid, and the number dropped
+     * because the solenoid was already in that state, in CarbonMetrics.
+     */
+    private Counter writeMetric;
+    private Counter suppressedMetric;
+    
     /**
      * Creates a CarbonSolenoid identical to Solenoid.
      * @param channel The PWM channel of this CarbonSolenoid.
@@ -22,6 +50,7 @@ public class CarbonSolenoid extends Solenoid
     public CarbonSolenoid(int channel) 
     {
         super(channel);
+        register("CarbonSolenoid " + channel);
     }
     
     /**
@@ -32,6 +61,7 @@ public class CarbonSolenoid extends Solenoid
     public CarbonSolenoid(int moduleNumber, int channel) 
     {
         super(moduleNumber, channel);
+        register("CarbonSolenoid " + moduleNumber + ":" + channel);
     }
     
     /**
@@ -44,6 +74,7 @@ public class CarbonSolenoid extends Solenoid
     {
         super(channel);
         this.inverted = inverted;
+        register("CarbonSolenoid " + channel);
     }
     
     /**
@@ -57,22 +88,63 @@ public class CarbonSolenoid extends Solenoid
     {
         super(moduleNumber, channel);
         this.inverted = inverted;
+        register("CarbonSolenoid " + moduleNumber + ":" + channel);
     }
     
     /**
      * Overrides Solenoid's set(), but passes the opposite value
-     * if this CarbonSolenoid is inverted.
+     * if this CarbonSolenoid is inverted.  Does nothing if the
+     * solenoid is already in that state.
      */
     public void set(boolean on) 
     {
-    	super.set(inverted ? !on : on);
+    	boolean state = inverted ? !on : on;
+    	if(written && state == output)
+    	{
+    		if(suppressedMetric != null)
+    		{
+    			suppressedMetric.increment();
+    		}
+    		return;
+    	}
+    	super.set(state);
+    	output = state;
+    	written = true;
+    	CarbonRecorder.record(deviceId, CarbonRecorder.TYPE_SOLENOID, 0, on ? 1.0 : 0.0, inverted ? 1.0 : 0.0);
+    	if(writeMetric != null)
+    	{
+    		writeMetric.increment();
+    	}
     }
     
+    //Registers this solenoid with the recorder and metrics under 'name'.
+    private void register(String name)
+    {
+    	deviceId = CarbonRecorder.registerDevice(name);
+    	writeMetric = CarbonMetrics.counter(name + ".writes");
+    	suppressedMetric = CarbonMetrics.counter(name + ".suppressed");
+    }
+    
+    /**
+     * @return The state last set, or the module's state if this
+     * solenoid hasn't been set yet.
+     */
     public boolean get() 
     {
-    	return inverted ? !super.get() : super.get();
+    	boolean state = written ? output : super.get();
+    	return inverted ? !state : state;
     }   
     
+    /**
+     * Forgets the state last written, so the next set() goes out to the
+     * module even if it's the same.  Useful if something else may have
+     * changed the solenoid, such as the module being power cycled.
+     */
+    public void invalidate()
+    {
+    	written = false;
+    }
+    
     public void toggleInverted() 
     {
         inverted = !inverted;
@@ -1,30 +1,35 @@
 package com.team1829.library;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import com.team1829.library.hal.MotorOutput;
 
 import edu.wpi.first.wpilibj.Talon;
 
-public class CarbonTalon extends Talon
+/**
+ * Talon with an optional output ramp.  The ramping itself is done by a
+ * RampedMotor that writes through to this Talon.
+ */
+public class CarbonTalon extends Talon implements MotorOutput
 {
-	public static final double RAMP_STEP = 0.05;
-	public static final long RAMP_TIME = 20;
+	public static final double RAMP_STEP = RampedMotor.RAMP_STEP;
+	public static final long RAMP_TIME = RampedMotor.RAMP_TIME;
 	
-	private Timer rampTimer;
-	private boolean rampEnabled = false;
-	
-	private double target = 0.0;
-	private double rampStep = RAMP_STEP; //default values
-	private long rampTime = RAMP_TIME; //default values
+	private RampedMotor ramp;
 	
 	public CarbonTalon(int channel, double step, long time) 
 	{	
 		super(channel);
-		target = 0.0;
-		rampStep = step;
-		rampTime = time;
-		rampTimer = new Timer();
-		rampTimer.schedule(new RampTask(), 0, rampTime);
+		ramp = new RampedMotor(new MotorOutput()
+		{
+			public void set(double power)
+			{
+				CarbonTalon.super.set(power);
+			}
+			
+			public double get()
+			{
+				return CarbonTalon.super.get();
+			}
+		}, step, time, "CarbonTalon " + channel);
 	}
 	
 	public CarbonTalon(int channel)
@@ -34,101 +39,74 @@ public class CarbonTalon extends Talon
 	
 	public void setRampEnabled(boolean enabled)
 	{
-		if(rampEnabled == enabled)
-		{
-			return;
-		}
-		
-		rampEnabled = enabled;
-		if(rampEnabled)
-		{
-			rampTimer.schedule(new RampTask(), 0, rampTime);
-		}
-		else
-		{
-			rampTimer.cancel();
-		}
+		ramp.setRampEnabled(enabled);
 	}
 	
 	public void setRampStep(double size)
 	{
-		if(size < 0)
-		{
-			size = 0;
-		}
-		
-		this.rampStep = size;
+		ramp.setRampStep(size);
 	}
 	
 	public double getRampStep()
 	{
-		return this.rampStep;
+		return ramp.getRampStep();
 	}
 	
 	public void setRampTime(long time)
 	{
-		if(time < 20)
-		{
-			time = 20;
-		}
-		
-		this.rampTime = time;
+		ramp.setRampTime(time);
 	}
 	
 	public long getRampTime()
 	{
-		return this.rampTime;
+		return ramp.getRampTime();
 	}
 	
-	public void set(double power)
+	/**
+	 * @param unitsPerSecond The fastest the output may change.
+	 */
+	public void setSlewRate(double unitsPerSecond)
 	{
-		if(rampEnabled)
-		{
-			this.target = power;
-		}
-		else
-		{
-			_set(power);
-		}
+		ramp.setSlewRate(unitsPerSecond);
+	}
+	
+	public double getSlewRate()
+	{
+		return ramp.getSlewRate();
+	}
+	
+	/**
+	 * Smooths the start and end of each ramp with an S-curve.  Pass 0 to
+	 * turn either limit off.
+	 * @param accelLimit Largest change of the rate, in units per second squared.
+	 * @param jerkLimit Largest change of the acceleration, in units per
+	 * second cubed.
+	 */
+	public void setProfileLimits(double accelLimit, double jerkLimit)
+	{
+		ramp.setProfileLimits(accelLimit, jerkLimit);
 	}
 	
-	private void _set(double power)
+	/**
+	 * @return The RampedMotor that drives this CarbonTalon.
+	 */
+	public RampedMotor getRamp()
 	{
-		super.set(power);
+		return ramp;
 	}
 	
 	/**
-	 * Thread that runs continuously in order to process the 
-	 * ramp of this CarbonTalon.
-	 * @author Nick Mosher, Team 1829 Carbonauts Captain
+	 * Sets motor speed, applying a ramp if
+	 * it's enabled.
 	 */
-	public class RampTask extends TimerTask
+	public void set(double power)
 	{
-		private double currentOutput;
-		
-		@Override
-		public void run() 
+		if(ramp == null)
 		{
-			currentOutput = CarbonTalon.this.get();
-			if(rampEnabled) 
-			{
-                boolean isUp = (currentOutput < target);
-                double step = isUp ? RAMP_STEP : -RAMP_STEP;
-
-                if((isUp && (currentOutput + step >= target)) || (!isUp && (currentOutput + step <= target))) 
-                {
-                    currentOutput = target;
-                } 
-                else 
-                {
-                    currentOutput += step;
-                }
-                _set(currentOutput);
-	        }
-			else
-			{
-				RampTask.this.cancel();
-			}
+			//Called from the superclass constructor, before the ramp exists.
+			super.set(power);
+			return;
 		}
+		ramp.set(power);
 	}
 }
@@ -6,6 +6,9 @@
 
 package com.team1829.library;
 
+import com.team1829.library.hal.Clock;
+import com.team1829.library.hal.Hardware;
+
 /**
  * CarbonTimer will use the system time to detect if a certain
  * amount of time has elapsed.  This is a non-freezing timer
@@ -15,11 +18,17 @@ package com.team1829.library;
  * to the desired countdown time, then call isDone() continuously
  * to trigger your desired action, as isDone will return true
  * starting on the first call after time is up.
+ *
+ * Time is measured with the monotonic hardware clock (System.nanoTime()
+ * on the robot) rather than the wall clock, so the timer isn't thrown
+ * off when the roboRIO syncs its time with the Driver Station.  For
+ * many timers at once, use a CarbonTimerWheel instead of polling each.
  * @author Greg Armstrong, Team 1829 Carbonauts Mentor
  * @author Nick Mosher, Team 1829 Carbonauts Captain
  */
-public class CarbonTimer 
-{    
+public class CarbonTimer
+{
+    private Clock clock;
     private long endTime;
 
     /**
@@ -27,26 +36,47 @@ public class CarbonTimer
      * Triggering is indicated with the isDone() method.
      * @param time The number of milliseconds to time.
      */
-    public CarbonTimer(long time) 
+    public CarbonTimer(long time)
+    {
+        this(time, Hardware.getClock());
+    }
+
+    /**
+     * Creates a CarbonTimer that will trigger in 'time' milliseconds
+     * as measured by 'clock'.
+     * @param time The number of milliseconds to time.
+     * @param clock The clock to measure time with.
+     */
+    public CarbonTimer(long time, Clock clock)
     {
-        endTime = System.currentTimeMillis() + time;
+        this.clock = clock;
+        reset(time);
     }
-    
+
     /**
      * Stops the previous countdown and starts a new one for 'time' milliseconds.
      * @param time The new countdown time in milliseconds.
      */
-    public void reset(long time) 
+    public void reset(long time)
     {
-        endTime = System.currentTimeMillis() + time;
+        endTime = clock.nanoTime() + time * 1000000L;
     }
-    
+
     /**
      * The indicator method used to detect if this timer is done.
      * @return True if the timer is done, false otherwise.
      */
-    public boolean isDone() 
+    public boolean isDone()
+    {
+        return clock.nanoTime() - endTime >= 0;
+    }
+
+    /**
+     * @return The number of milliseconds left, or 0 if the timer is done.
+     */
+    public long getRemaining()
     {
-        return System.currentTimeMillis() >= endTime;
+        long remaining = endTime - clock.nanoTime();
+        return remaining > 0 ? (remaining + 999999L) / 1000000L : 0;
     }
 }
@@ -0,0 +1,343 @@
+package com.team1829.library;
+
+import com.team1829.library.hal.Clock;
+import com.team1829.library.hal.Hardware;
+
+/**
+ * Keeps track of many timeouts at once without checking each one every
+ * loop.
+ *
+ * Time is cut into ticks, and timeouts are hashed by the tick they are
+ * due into the slots of four wheels of 256 slots each.  The first wheel
+ * holds timeouts due within 256 ticks, one slot per tick; each wheel
+ * after it holds timeouts 256 times further out, 256 ticks per slot.
+ * Whenever the first wheel comes back around, the next slot of the
+ * wheel above is emptied down into it (and so on up the wheels), so
+ * every timeout is only moved a handful of times before it is due.
+ * Scheduling and cancelling are O(1), and each tick only touches the
+ * timeouts that are actually due.
+ *
+ * Call advance() once per robot loop.  Timeouts scheduled with a
+ * Runnable have it called when they are due; the rest are put on an
+ * expired list that can be drained with pollExpired().
+ *
+ * A CarbonTimerWheel is not thread-safe; schedule, cancel, and advance
+ * it all from the robot loop.
+ */
+public class CarbonTimerWheel
+{
+	/**
+	 * Default length of one tick, in milliseconds.
+	 */
+	public static final long DEFAULT_TICK = 1;
+
+	private static final int WHEEL_BITS = 8;
+	private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+	private static final int WHEEL_COUNT = 4;
+
+	/**
+	 * Longest delay in ticks.  Longer delays are shortened to this.
+	 */
+	public static final long MAX_DELAY_TICKS = (1L << (WHEEL_BITS * WHEEL_COUNT)) - 1;
+
+	private Clock clock;
+	private long tickNanos;
+	private long startTime;
+	private long currentTick;
+	private Timeout[][] wheels;
+	private int size;
+
+	private Timeout expiredHead;
+	private Timeout expiredTail;
+
+	/**
+	 * Creates a CarbonTimerWheel with 1 millisecond ticks on the hardware
+	 * clock.
+	 */
+	public CarbonTimerWheel()
+	{
+		this(DEFAULT_TICK, Hardware.getClock());
+	}
+
+	/**
+	 * Creates a CarbonTimerWheel.
+	 * @param tick The length of one tick in milliseconds.  Timeouts are
+	 * rounded up to a whole number of ticks.
+	 * @param clock The clock to measure time with.
+	 */
+	public CarbonTimerWheel(long tick, Clock clock)
+	{
+		this.clock = clock;
+		this.tickNanos = Math.max(tick, 1) * 1000000L;
+		this.startTime = clock.nanoTime();
+		this.currentTick = 0;
+		this.wheels = new Timeout[WHEEL_COUNT][WHEEL_SIZE];
+		this.size = 0;
+	}
+
+	/**
+	 * Schedules a timeout that goes on the expired list when it is due.
+	 * @param delay How long until it is due, in milliseconds.
+	 * @return The timeout, for cancelling it or matching it when drained.
+	 */
+	public Timeout schedule(long delay)
+	{
+		return schedule(delay, null);
+	}
+
+	/**
+	 * Schedules a timeout.
+	 * @param delay How long until it is due, in milliseconds.
+	 * @param callback Called by advance() when it is due, or null to put
+	 * it on the expired list instead.
+	 * @return The timeout, for cancelling it.
+	 */
+	public Timeout schedule(long delay, Runnable callback)
+	{
+		long ticks = (delay * 1000000L + tickNanos - 1) / tickNanos;
+		if(ticks < 1)
+		{
+			ticks = 1;
+		}
+		if(ticks > MAX_DELAY_TICKS)
+		{
+			ticks = MAX_DELAY_TICKS;
+		}
+
+		//Count from the clock, not currentTick, which is only as new as the
+		//last advance().  Anything due in between expires on the next one.
+		long now = Math.max(currentTick, (clock.nanoTime() - startTime) / tickNanos);
+		Timeout timeout = new Timeout(this, now + ticks, callback);
+		insert(timeout);
+		size++;
+		return timeout;
+	}
+
+	/**
+	 * Brings the wheel up to the current time, expiring every timeout
+	 * that has come due.
+	 * @return The number of timeouts that expired.
+	 */
+	public int advance()
+	{
+		long target = (clock.nanoTime() - startTime) / tickNanos;
+		int expired = 0;
+		while(currentTick < target)
+		{
+			if(size == 0)
+			{
+				//Nothing to expire, so skip straight to now.
+				currentTick = target;
+				break;
+			}
+			expired += tick();
+		}
+		return expired;
+	}
+
+	/**
+	 * Takes the oldest timeout off the expired list.
+	 * @return The timeout, or null if the list is empty.
+	 */
+	public Timeout pollExpired()
+	{
+		Timeout timeout = expiredHead;
+		if(timeout != null)
+		{
+			expiredHead = timeout.next;
+			if(expiredHead == null)
+			{
+				expiredTail = null;
+			}
+			timeout.next = null;
+		}
+		return timeout;
+	}
+
+	/**
+	 * @return The number of timeouts scheduled and not yet due.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return The number of whole ticks since the wheel was made.
+	 */
+	public long getCurrentTick()
+	{
+		return currentTick;
+	}
+
+	//Moves one tick forward and expires that tick's slot.
+	private int tick()
+	{
+		currentTick++;
+		long tick = currentTick;
+
+		//Each time a wheel comes around, empty the next slot above it.
+		for(int level = 1; level < WHEEL_COUNT; level++)
+		{
+			if((tick & ((1L << (WHEEL_BITS * level)) - 1)) != 0)
+			{
+				break;
+			}
+			cascade(level, (int)(tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+		}
+
+		//Unlink one at a time, so a callback can safely cancel another
+		//timeout due on the same tick.
+		int slot = (int)tick & WHEEL_MASK;
+		int expired = 0;
+		Timeout timeout;
+		while((timeout = wheels[0][slot]) != null)
+		{
+			remove(timeout);
+			expire(timeout);
+			expired++;
+		}
+		return expired;
+	}
+
+	//Re-files every timeout in one slot of a higher wheel.
+	private void cascade(int level, int slot)
+	{
+		Timeout timeout = wheels[level][slot];
+		wheels[level][slot] = null;
+		while(timeout != null)
+		{
+			Timeout next = timeout.next;
+			timeout.prev = null;
+			timeout.next = null;
+			insert(timeout);
+			timeout = next;
+		}
+	}
+
+	//Files a timeout in the wheel and slot for its deadline.
+	private void insert(Timeout timeout)
+	{
+		long remaining = timeout.deadline - currentTick;
+		int level = 0;
+		while(level < WHEEL_COUNT - 1 && remaining >= (1L << (WHEEL_BITS * (level + 1))))
+		{
+			level++;
+		}
+		int slot = (int)(timeout.deadline >>> (WHEEL_BITS * level)) & WHEEL_MASK;
+
+		Timeout head = wheels[level][slot];
+		timeout.level = level;
+		timeout.slot = slot;
+		timeout.prev = null;
+		timeout.next = head;
+		if(head != null)
+		{
+			head.prev = timeout;
+		}
+		wheels[level][slot] = timeout;
+	}
+
+	//Unlinks a timeout from its slot.
+	private void remove(Timeout timeout)
+	{
+		if(timeout.prev != null)
+		{
+			timeout.prev.next = timeout.next;
+		}
+		else
+		{
+			wheels[timeout.level][timeout.slot] = timeout.next;
+		}
+		if(timeout.next != null)
+		{
+			timeout.next.prev = timeout.prev;
+		}
+		timeout.prev = null;
+		timeout.next = null;
+		timeout.level = -1;
+		size--;
+	}
+
+	private void expire(Timeout timeout)
+	{
+		timeout.expired = true;
+		if(timeout.callback != null)
+		{
+			timeout.callback.run();
+			return;
+		}
+		if(expiredTail == null)
+		{
+			expiredHead = timeout;
+		}
+		else
+		{
+			expiredTail.next = timeout;
+		}
+		expiredTail = timeout;
+	}
+
+	/**
+	 * One scheduled timeout.  Doubles as its own list node, so filing
+	 * and unfiling it never allocates.
+	 */
+	public static class Timeout
+	{
+		private final CarbonTimerWheel wheel;
+		private final long deadline;
+		private final Runnable callback;
+		private Timeout prev;
+		private Timeout next;
+		private int level;
+		private int slot;
+		private boolean expired;
+		private boolean cancelled;
+
+		private Timeout(CarbonTimerWheel wheel, long deadline, Runnable callback)
+		{
+			this.wheel = wheel;
+			this.deadline = deadline;
+			this.callback = callback;
+			this.level = -1;
+		}
+
+		/**
+		 * Stops the timeout from expiring.  Does nothing if it already
+		 * has.
+		 * @return True if it was cancelled before it expired.
+		 */
+		public boolean cancel()
+		{
+			if(expired || cancelled)
+			{
+				return false;
+			}
+			cancelled = true;
+			if(level >= 0)
+			{
+				wheel.remove(this);
+			}
+			return true;
+		}
+
+		public boolean isExpired()
+		{
+			return expired;
+		}
+
+		public boolean isCancelled()
+		{
+			return cancelled;
+		}
+
+		/**
+		 * @return The tick the timeout is due on.
+		 */
+		public long getDeadline()
+		{
+			return deadline;
+		}
+	}
+}
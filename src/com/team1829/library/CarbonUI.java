@@ -5,9 +5,17 @@
 package com.team1829.library;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
-import edu.wpi.first.wpilibj.Joystick;
+import com.team1829.library.hal.Clock;
+import com.team1829.library.hal.Hardware;
+import com.team1829.library.hal.HidSource;
+import com.team1829.library.metrics.CarbonMetrics;
+import com.team1829.library.metrics.Counter;
 
 /**
  * This class is the core for all of the Operator needs pertaining to any
@@ -23,10 +31,37 @@ import edu.wpi.first.wpilibj.Joystick;
  * the getButtonData() method, and vice versa for ControlType.AXIS and 
  * getAxisData().
  * 
+ * Name lookups ignore case and are backed by a hash index.  For the
+ * tightest loops, keep the ControlHandle returned by addControl() and read
+ * through it instead, which skips the name lookup entirely.
+ * 
+ * Calling poll() once per loop captures every mapped control at once, and
+ * all reads for the rest of that loop come from that capture.  Button
+ * edges are then found for every port at once by a LatchBitSet, so
+ * getButtonPress() and getButtonRelease() give the same answer however
+ * many times, and in whatever order, they are called in that loop.
+ * 
+ * Axes can be given an AxisShaper with Control.setShaper() for
+ * deadband, expo, and the like.  Shaped axes are worked out from a
+ * lookup table during poll(), and getAxisData() returns the shaped value.
+ * 
+ * Instead of asking for presses every loop, listeners can be registered
+ * with onPress(), onRelease(), onHold(), and onAxisCross().  Calling
+ * dispatch() once per loop, in place of poll(), polls every control and
+ * calls only the listeners of the buttons that changed, found from the
+ * same LatchBitSet.  Because edges are found by comparing whole captures
+ * rather than per query, an edge is never lost because nobody asked for
+ * it in that loop.
+ * 
  * Different instances of CarbonUI may be instantiated and stored to allow
  * different control configurations to be accessed.  This can be useful to assign
  * different controller mappings 
  * 
+ * Mappings can also be written in a profile file instead of with
+ * addControl() calls; see ControlProfile.  Load the file with
+ * ProfileLibrary and switch a running CarbonUI between its profiles with
+ * setProfile().
+ * 
  * @author Nick Mosher, Team 1829 Carbonauts Captain
  */
 public class CarbonUI 
@@ -37,6 +72,30 @@ public class CarbonUI
 		Button
 	}
 	
+	/**
+	 * Called when a button is pressed, released, or held.
+	 */
+	public interface ButtonListener
+	{
+		/**
+		 * @param control The button the event happened on.
+		 */
+		public void buttonEvent(Control control);
+	}
+	
+	/**
+	 * Called when an axis crosses a threshold.
+	 */
+	public interface AxisListener
+	{
+		/**
+		 * @param control The axis that crossed.
+		 * @param value The axis's new position.
+		 * @param rising True if the axis crossed going up, false if down.
+		 */
+		public void axisCrossed(Control control, double value, boolean rising);
+	}
+	
 	/**
 	 * The default return value for a button that does not exist.
 	 */
@@ -46,6 +105,21 @@ public class CarbonUI
 	 * The default return value for an axis that does not exist.
 	 */
 	public static final double AXIS_NULL = 0.0;
+	
+	/**
+	 * The number of USB ports the Driver Station supports.
+	 */
+	public static final int PORT_COUNT = 6;
+	
+	/**
+	 * The highest button ID that is captured by poll().
+	 */
+	public static final int MAX_BUTTONS = 32;
+	
+	/**
+	 * The number of axis IDs that are captured by poll().
+	 */
+	public static final int MAX_AXES = 12;
     
     /**
      * Dynamic list that will keep track of all UIElements that are added to the
@@ -53,6 +127,100 @@ public class CarbonUI
      */
     private List<Control> controls;
     
+    /**
+     * Index of every control keyed by its case-folded name, so lookups don't
+     * need to walk the whole list.
+     */
+    private Map<String, Control> controlIndex;
+    
+    /**
+     * Cache of names exactly as callers have asked for them.  Callers nearly
+     * always pass the same literal every loop, so this saves case-folding the
+     * name on each read.  Cleared whenever the set of controls changes.
+     */
+    private Map<String, Control> lookupCache;
+    
+    /**
+     * One device per USB port, created the first time the port is read.
+     */
+    private HidSource[] joysticks;
+    
+    /**
+     * Button and axis values captured by the last call to poll(), indexed
+     * by [port][id].
+     */
+    private boolean[][] buttonSnapshot;
+    private double[][] axisSnapshot;
+    
+    /**
+     * Whether poll() has been called.  Until it has, every read goes
+     * straight to the Joystick.
+     */
+    private boolean polled;
+    
+    /**
+     * Number of poll() calls so far.  Each control is stamped with the
+     * poll that last captured it, so a control added or moved since then
+     * is read from the Joystick instead of from cells nobody sampled.
+     */
+    private long pollCount;
+    
+    /**
+     * ID of this CarbonUI in the CarbonRecorder.
+     */
+    private int deviceId;
+    
+    /**
+     * CarbonMetrics counters for name lookups: every lookup, the ones that
+     * missed the lookup cache, and the ones that found no control at all.
+     */
+    private Counter lookupMetric;
+    private Counter missMetric;
+    private Counter unknownMetric;
+    
+    /**
+     * Button states from the last two calls to poll(), one word per port
+     * with bit N for button ID N.
+     */
+    private LatchBitSet buttonLatches;
+    private long[] buttonWords;
+    
+    /*
+     * Per port, the buttons captured by this poll() that weren't by the
+     * last one, and the buttons captured by both.
+     */
+    private long[] newButtonWords;
+    private long[] keptButtonWords;
+    
+    /**
+     * Controls with listeners, indexed for dispatch(): buttons by
+     * [port * (MAX_BUTTONS + 1) + id], and a flat list of axes.  Rebuilt
+     * on the next dispatch() whenever bindingsDirty is set.
+     */
+    private Control[][] buttonBindings;
+    private Control[] axisBindings;
+    private boolean bindingsDirty;
+    
+    /**
+     * Buttons that are held down and have onHold() listeners waiting.
+     */
+    private List<Control> holding;
+    private Control[] heldScratch;
+    private Clock clock;
+    
+    /**
+     * The profile set by setProfile(), and the one poll() last applied.
+     * poll() applies the new one when they differ.
+     */
+    private AtomicReference<ProfileBinding> nextProfile;
+    private ProfileBinding activeProfile;
+    
+    /**
+     * Bumped by each profile swap, to mark the controls the new profile
+     * binds.
+     */
+    private long profileMark;
+    
     /**
      * Creates a new CarbonUI object.  Each CarbonUI can have different configurations,
      * so different users could instantiate their own CarbonUI's and add their own
@@ -61,53 +229,354 @@ public class CarbonUI
     public CarbonUI() 
     {
         controls = new ArrayList<Control>();
+        controlIndex = new HashMap<String, Control>();
+        lookupCache = new HashMap<String, Control>();
+        joysticks = new HidSource[PORT_COUNT];
+        buttonSnapshot = new boolean[PORT_COUNT][MAX_BUTTONS + 1];
+        axisSnapshot = new double[PORT_COUNT][MAX_AXES];
+        polled = false;
+        pollCount = 0;
+        deviceId = CarbonRecorder.registerDevice("CarbonUI");
+        lookupMetric = CarbonMetrics.counter("CarbonUI.lookups");
+        missMetric = CarbonMetrics.counter("CarbonUI.misses");
+        unknownMetric = CarbonMetrics.counter("CarbonUI.unknown");
+        buttonLatches = new LatchBitSet(PORT_COUNT);
+        buttonWords = new long[PORT_COUNT];
+        newButtonWords = new long[PORT_COUNT];
+        keptButtonWords = new long[PORT_COUNT];
+        buttonBindings = new Control[PORT_COUNT * (MAX_BUTTONS + 1)][];
+        axisBindings = new Control[0];
+        bindingsDirty = false;
+        holding = new ArrayList<Control>();
+        heldScratch = new Control[0];
+        clock = Hardware.getClock();
+        nextProfile = new AtomicReference<ProfileBinding>(null);
+        activeProfile = null;
+        profileMark = 0;
     }
     
     /**
-     * Adds a control object to the CarbonUI.
-     * @param name The name of the control object.
-     * @param port The USB port the control object is on.
-     * @param id The ID of the control object.
-     * @return true if the control was added successfully, false
-     * if a control by the same name already exists or if another
-     * control references the exact port and id already.
+     * Captures the state of every mapped button and axis in one pass.
+     * Call this once at the top of each loop; every read after it in the
+     * same loop returns the captured values, so they all agree with each
+     * other and none of them touch the Driver Station again.
      */
-    public boolean addControl(String name, ControlType type, int port, int id)
+    public void poll()
     {
-    	Control control = new Control(name, type, port, id);
-    	for(Control c : controls)
+    	ProfileBinding profile = nextProfile.get();
+    	if(profile != activeProfile)
+    	{
+    		applyProfile(profile);
+    	}
+    	
+    	long now = clock.nanoTime();
+    	pollCount++;
+    	for(int port = 0; port < PORT_COUNT; port++)
+    	{
+    		buttonWords[port] = 0L;
+    		newButtonWords[port] = 0L;
+    		keptButtonWords[port] = 0L;
+    	}
+    	for(int i = 0; i < controls.size(); i++)
+    	{
+    		Control c = controls.get(i);
+    		if(!inSnapshot(c))
+    		{
+    			continue;
+    		}
+    		int port = c.getPort();
+    		int id = c.getID();
+    		boolean kept = c.polledAt == pollCount - 1;
+    		c.polledAt = pollCount;
+    		
+    		if(c.getType() == ControlType.Button)
+    		{
+    			if(kept)
+    			{
+    				keptButtonWords[port] |= 1L << id;
+    			}
+    			else
+    			{
+    				newButtonWords[port] |= 1L << id;
+    			}
+    			boolean state = sampleButton(port, id);
+    			buttonSnapshot[port][id] = state;
+    			if(state)
+    			{
+    				buttonWords[port] |= 1L << id;
+    			}
+    		}
+    		else
+    		{
+    			double value = sampleAxis(port, id);
+    			axisSnapshot[port][id] = value;
+    			if(c.shaper != null)
+    			{
+    				c.shapedAxis = c.shaper.shape(value, now);
+    			}
+    		}
+    	}
+    	
+    	//The first capture has nothing to compare to, so it has no edges.
+    	//Neither does a button that only just got a control, such as one
+    	//added or moved onto a button that is already held down.
+    	for(int port = 0; port < PORT_COUNT; port++)
     	{
-    		if(c.equals(control))
+    		if(polled)
+    		{
+    			buttonLatches.update(port, buttonWords[port], newButtonWords[port] & ~keptButtonWords[port]);
+    		}
+    		else
     		{
-    			return false;
+    			buttonLatches.prime(port, buttonWords[port]);
     		}
     	}
-    	controls.add(control);
+    	polled = true;
+    }
+    
+    /**
+     * Polls every control, then calls the listeners of every button that
+     * was pressed or released since the last poll, every hold that has
+     * now lasted long enough, and every axis that crossed one of its
+     * thresholds.  Call this once per loop in place of poll().
+     * 
+     * Finding the changed buttons takes one XOR per port, and only the
+     * changed buttons' listeners are looked at.  On the very first poll
+     * nothing fires; that capture is only the starting point.
+     */
+    public void dispatch()
+    {
+    	poll();
+    	if(bindingsDirty)
+    	{
+    		rebuildBindings();
+    	}
+    	
+    	long now = clock.nanoTime();
+    	for(int port = 0; port < PORT_COUNT; port++)
+    	{
+    		long current = buttonLatches.getState(port);
+    		long changed = buttonLatches.getChanged(port);
+    		while(changed != 0)
+    		{
+    			int id = Long.numberOfTrailingZeros(changed);
+    			changed &= changed - 1;
+    			Control[] bound = buttonBindings[port * (MAX_BUTTONS + 1) + id];
+    			if(bound == null)
+    			{
+    				continue;
+    			}
+    			boolean pressed = (current & (1L << id)) != 0;
+    			for(int i = 0; i < bound.length; i++)
+    			{
+    				buttonChanged(bound[i], pressed, now);
+    			}
+    		}
+    	}
+    	
+    	//A hold listener may remove controls or their listeners, which
+    	//changes 'holding', so walk a copy and look each one up again.
+    	int held = holding.size();
+    	if(held > 0)
+    	{
+    		if(heldScratch.length < held)
+    		{
+    			heldScratch = new Control[held];
+    		}
+    		holding.toArray(heldScratch);
+    		for(int i = 0; i < held; i++)
+    		{
+    			Control c = heldScratch[i];
+    			heldScratch[i] = null;
+    			if(holding.contains(c) && c.checkHolds(now))
+    			{
+    				holding.remove(c);
+    			}
+    		}
+    	}
+    	
+    	for(int i = 0; i < axisBindings.length; i++)
+    	{
+    		Control c = axisBindings[i];
+    		c.checkCrossings(readAxis(c));
+    	}
+    }
+    
+    /**
+     * Registers a listener called by dispatch() when a button is pressed.
+     * @param name The name of the button.
+     * @param listener The listener to call.
+     * @return False if there is no button by that name.
+     */
+    public boolean onPress(String name, ButtonListener listener)
+    {
+    	Control c = findButton(name);
+    	if(c == null)
+    	{
+    		return false;
+    	}
+    	c.pressListeners.add(listener);
+    	bindingsDirty = true;
     	return true;
     }
     
+    /**
+     * Registers a listener called by dispatch() when a button is released.
+     * @param name The name of the button.
+     * @param listener The listener to call.
+     * @return False if there is no button by that name.
+     */
+    public boolean onRelease(String name, ButtonListener listener)
+    {
+    	Control c = findButton(name);
+    	if(c == null)
+    	{
+    		return false;
+    	}
+    	c.releaseListeners.add(listener);
+    	bindingsDirty = true;
+    	return true;
+    }
+    
+    /**
+     * Registers a listener called by dispatch() once a button has been
+     * held for 'duration' milliseconds.  It is called once per press.
+     * @param name The name of the button.
+     * @param duration How long the button must be held, in milliseconds.
+     * @param listener The listener to call.
+     * @return False if there is no button by that name.
+     */
+    public boolean onHold(String name, long duration, ButtonListener listener)
+    {
+    	Control c = findButton(name);
+    	if(c == null)
+    	{
+    		return false;
+    	}
+    	c.holdListeners.add(listener);
+    	c.holdDurations.add(duration * 1000000L);
+    	bindingsDirty = true;
+    	return true;
+    }
+    
+    /**
+     * Registers a listener called by dispatch() whenever an axis crosses
+     * 'threshold' in either direction.
+     * @param name The name of the axis.
+     * @param threshold The position to watch for.
+     * @param listener The listener to call.
+     * @return False if there is no axis by that name.
+     */
+    public boolean onAxisCross(String name, double threshold, AxisListener listener)
+    {
+    	Control c = findControl(name);
+    	if(c == null || c.getType() != ControlType.Axis)
+    	{
+    		return false;
+    	}
+    	c.axisListeners.add(listener);
+    	c.axisThresholds.add(threshold);
+    	bindingsDirty = true;
+    	return true;
+    }
+    
+    /**
+     * Removes every listener registered on a control.
+     * @param name The name of the control.
+     * @return False if there is no control by that name.
+     */
+    public boolean removeListeners(String name)
+    {
+    	Control c = findControl(name);
+    	if(c == null)
+    	{
+    		return false;
+    	}
+    	c.clearListeners();
+    	holding.remove(c);
+    	bindingsDirty = true;
+    	return true;
+    }
+    
+    /**
+     * Switches to a different ControlProfile.  Safe to call from any
+     * thread; the switch happens all at once at the start of the next
+     * poll(), so no loop ever sees half of one profile and half of
+     * another.
+     * 
+     * Each control in the profile is added, or if a control by that name
+     * already exists, moved to the profile's port and ID and given the
+     * profile's shaping.  Handles and listeners stay attached.  Controls
+     * the outgoing profile bound that the new one doesn't name are
+     * unbound: they read as BUTTON_NULL or AXIS_NULL and their listeners
+     * stay quiet until a profile or setData() binds them again.  Controls
+     * no profile has bound are left as they are.
+     * 
+     * The new controls, their handles, and their shapers are all made
+     * here, on the calling thread, so poll() only has to put them in
+     * place.
+     * @param profile The profile to switch to, or null to unbind every
+     * control the current profile bound.
+     */
+    public void setProfile(ControlProfile profile)
+    {
+    	nextProfile.set(profile == null ? null : new ProfileBinding(profile));
+    }
+    
+    /**
+     * @return The profile the last poll() switched to, or null if none.
+     */
+    public ControlProfile getProfile()
+    {
+    	ProfileBinding active = activeProfile;
+    	return active == null ? null : active.profile;
+    }
+    
+    /**
+     * Adds a control object to the CarbonUI.
+     * @param name The name of the control object.
+     * @param port The USB port the control object is on.
+     * @param id The ID of the control object.
+     * @return A handle that reads the control directly, or null
+     * if a control by the same name already exists.
+     */
+    public ControlHandle addControl(String name, ControlType type, int port, int id)
+    {
+    	return addControl(new Control(name, type, port, id));
+    }
+    
     /**
      * Adds a control object to the CarbonUI.
      * @param control The control to add to this CarbonUI.
-     * @return true if the control was added successfully, false
-     * if a control by the same name already exists or if another
-     * control references the exact port and id already.
+     * @return A handle that reads the control directly, or null
+     * if a control by the same name already exists.
      */
-    public boolean addControl(Control control)
+    public ControlHandle addControl(Control control)
     {
-    	for(Control c : controls)
+    	String key = foldName(control.getName());
+    	if(controlIndex.containsKey(key))
     	{
-    		if(control.equals(c))
-    		{
-    			return false;
-    		}
+    		return null;
     	}
+    	control.handle = new ControlHandle(control);
+    	register(control, key);
+    	return control.handle;
+    }
+    
+    //Puts a control that already has its handle into the index.
+    private void register(Control control, String key)
+    {
     	controls.add(control);
-    	return true;
+    	controlIndex.put(key, control);
+    	lookupCache.clear();
+    	control.owner = this;
+    	control.polledAt = 0;
+    	control.unbound = false;
     }
     
     /**
-     * Removes a control from the CarbonUI.
+     * Removes a control from the CarbonUI.  Any handle to the control
+     * will return the null values from then on.
      * @param name The name of the control to remove.
      * @return true if the process completed successfully, i.e. a control with the
      * name 'name' was found and removed.  false if no matching control was found
@@ -115,15 +584,31 @@ public class CarbonUI
      */
     public boolean removeControl(String name)
     {
-    	for(int i = 0; i < controls.size(); i++)
+    	Control control = controlIndex.remove(foldName(name));
+    	if(control == null)
     	{
-    		if(controls.get(i).getName().equalsIgnoreCase(name))
-    		{
-    			controls.remove(i);
-    			return true;
-    		}
+    		return false;
     	}
-    	return false;
+    	controls.remove(control);
+    	lookupCache.clear();
+    	holding.remove(control);
+    	bindingsDirty = true;
+    	control.owner = null;
+    	control.handle.control = null;
+    	control.handle = null;
+    	return true;
+    }
+    
+    /**
+     * Returns the handle of a control so that it can be read without
+     * looking it up by name each time.
+     * @param name The name of the control.
+     * @return The control's handle, or null if there is no such control.
+     */
+    public ControlHandle getHandle(String name)
+    {
+    	Control control = findControl(name);
+    	return control == null ? null : control.handle;
     }
     
     /**
@@ -133,83 +618,394 @@ public class CarbonUI
      */
     public boolean getButtonState(String name)
     {
-    	for(Control c : controls)
+    	Control c = findButton(name);
+    	return c == null ? BUTTON_NULL : readButton(c);
+    }
+    
+    public boolean getButtonPress(String name)
+    {
+    	Control c = findButton(name);
+    	return c == null ? BUTTON_NULL : readButtonPress(c);
+    }
+    
+    public boolean getButtonRelease(String name)
+    {
+    	Control c = findButton(name);
+    	return c == null ? BUTTON_NULL : readButtonRelease(c);
+    }
+    
+    /**
+     * Gets the data from an axis control object based on its name.
+     * @param name The name of the axis.
+     * @return The axis's status.
+     */
+    public double getAxisData(String name)
+    {
+    	Control c = findControl(name);
+    	if(c == null)
+    	{
+    		return AXIS_NULL;
+    	}
+    	if(c.getType() != ControlType.Axis)
+    	{
+    		System.out.println(name + " exists, but is not an Axis control!");
+    		return AXIS_NULL;
+    	}
+    	return readAxis(c);
+    }
+    
+    //Finds a control by name and checks that it's a button.
+    private Control findButton(String name)
+    {
+    	Control c = findControl(name);
+    	if(c != null && c.getType() != ControlType.Button)
     	{
-    		if(c.getName().equalsIgnoreCase(name))
+    		System.out.println(name + " exists, but is not a Button control!");
+    		return null;
+    	}
+    	return c;
+    }
+    
+    //Finds a control by name, ignoring case.
+    private Control findControl(String name)
+    {
+    	lookupMetric.increment();
+    	Control c = lookupCache.get(name);
+    	if(c == null)
+    	{
+    		missMetric.increment();
+    		c = controlIndex.get(foldName(name));
+    		if(c != null)
     		{
-    			if(c.getType() == ControlType.Button)
-    			{
-    				return new Joystick(c.getPort()).getRawButton(c.getID());
-    			}
-    			else
-    			{
-    				System.out.println(name + " exists, but is not a Button control!");
-    			}
+    			lookupCache.put(name, c);
+    		}
+    		else
+    		{
+    			unknownMetric.increment();
     		}
     	}
-    	return BUTTON_NULL;
+    	return c;
     }
     
-    public boolean getButtonPress(String name)
+    private boolean readButton(Control c)
     {
-    	for(Control c : controls)
+    	if(isCaptured(c))
+    	{
+    		return buttonSnapshot[c.getPort()][c.getID()];
+    	}
+    	if(c.unbound)
     	{
-    		if(c.getName().equalsIgnoreCase(name))
+    		return BUTTON_NULL;
+    	}
+    	return sampleButton(c.getPort(), c.getID());
+    }
+    
+    private boolean readButtonPress(Control c)
+    {
+    	if(isCaptured(c))
+    	{
+    		return buttonLatches.isPressed(c.getPort(), c.getID());
+    	}
+    	return c.getLatch().onTrue(readButton(c));
+    }
+    
+    private boolean readButtonRelease(Control c)
+    {
+    	if(isCaptured(c))
+    	{
+    		return buttonLatches.isReleased(c.getPort(), c.getID());
+    	}
+    	return c.getLatch().onFalse(readButton(c));
+    }
+    
+    private double readAxis(Control c)
+    {
+    	AxisShaper shaper = c.shaper;
+    	if(isCaptured(c))
+    	{
+    		return shaper == null ? axisSnapshot[c.getPort()][c.getID()] : c.shapedAxis;
+    	}
+    	if(c.unbound)
+    	{
+    		return AXIS_NULL;
+    	}
+    	double value = sampleAxis(c.getPort(), c.getID());
+    	return shaper == null ? value : shaper.shape(value, clock.nanoTime());
+    }
+    
+    //Reads a button from the device and records it.
+    private boolean sampleButton(int port, int id)
+    {
+    	boolean state = getJoystick(port).getRawButton(id);
+    	CarbonRecorder.record(deviceId, CarbonRecorder.TYPE_BUTTON, (port << 8) | id, state ? 1.0 : 0.0, 0.0);
+    	return state;
+    }
+    
+    //Reads an axis from the device and records it.
+    private double sampleAxis(int port, int id)
+    {
+    	double value = getJoystick(port).getRawAxis(id);
+    	CarbonRecorder.record(deviceId, CarbonRecorder.TYPE_AXIS, (port << 8) | id, value, 0.0);
+    	return value;
+    }
+    
+    //Whether the last poll() captured the control where it is now.
+    private boolean isCaptured(Control c)
+    {
+    	return c.polledAt == pollCount && pollCount > 0;
+    }
+    
+    //Whether the control is bound and its port and ID fit in the
+    //snapshot arrays.
+    private boolean inSnapshot(Control c)
+    {
+    	int port = c.getPort();
+    	int id = c.getID();
+    	if(c.unbound || port < 0 || port >= PORT_COUNT || id < 0)
+    	{
+    		return false;
+    	}
+    	return c.getType() == ControlType.Button ? id <= MAX_BUTTONS : id < MAX_AXES;
+    }
+    
+    //Returns the cached device for a port, creating it if needed.
+    private HidSource getJoystick(int port)
+    {
+    	if(port < 0 || port >= PORT_COUNT)
+    	{
+    		return Hardware.getFactory().getHidSource(port);
+    	}
+    	if(joysticks[port] == null)
+    	{
+    		joysticks[port] = Hardware.getFactory().getHidSource(port);
+    	}
+    	return joysticks[port];
+    }
+    
+    //Calls a button's press or release listeners and starts or stops
+    //timing its holds.
+    private void buttonChanged(Control c, boolean pressed, long now)
+    {
+    	if(pressed)
+    	{
+    		c.fireAll(c.pressListeners);
+    		if(!c.holdListeners.isEmpty())
     		{
-    			if(c.getType() == ControlType.Button)
-    			{
-    				return c.getLatch().onTrue(new Joystick(c.getPort()).getRawButton(c.getID()));
-    			}
-    			else
-    			{
-    				System.out.println(name + " exists, but is not a Button control!");
-    			}
+    			c.startHold(now);
+    			holding.add(c);
     		}
     	}
-    	return BUTTON_NULL;
+    	else
+    	{
+    		c.fireAll(c.releaseListeners);
+    		holding.remove(c);
+    	}
     }
     
-    public boolean getButtonRelease(String name)
+    //Moves every control named by the profile to the profile's mapping
+    //and unbinds the ones only the outgoing profile named.  Everything it
+    //needs was made by setProfile(), so this allocates nothing unless
+    //the profile brings a name this CarbonUI has never had.
+    private void applyProfile(ProfileBinding binding)
     {
-    	for(Control c : controls)
+    	ProfileBinding outgoing = activeProfile;
+    	activeProfile = binding;
+    	profileMark++;
+    	if(binding != null)
     	{
-    		if(c.getName().equalsIgnoreCase(name))
+    		ControlProfile profile = binding.profile;
+    		for(int i = 0; i < binding.controls.length; i++)
     		{
-    			if(c.getType() == ControlType.Button)
+    			Control c = controlIndex.get(binding.keys[i]);
+    			if(c == null)
     			{
-    				return c.getLatch().onFalse(new Joystick(c.getPort()).getRawButton(c.getID()));
+    				c = binding.spares[i];
+    				register(c, binding.keys[i]);
     			}
     			else
     			{
-    				System.out.println(name + " exists, but is not a Button control!");
+    				c.setData(profile.getType(i), profile.getPort(i), profile.getID(i));
+    			}
+    			c.setShaper(binding.shapers[i]);
+    			c.profileMark = profileMark;
+    			binding.controls[i] = c;
+    		}
+    	}
+    	if(outgoing != null)
+    	{
+    		for(int i = 0; i < outgoing.controls.length; i++)
+    		{
+    			Control c = outgoing.controls[i];
+    			if(c.owner == this && c.profileMark != profileMark)
+    			{
+    				unbind(c);
     			}
     		}
     	}
-    	return BUTTON_NULL;
+    }
+    
+    //Stops reading a control until it is bound again, keeping its name,
+    //handle, and listeners.
+    private void unbind(Control c)
+    {
+    	c.unbound = true;
+    	c.polledAt = 0;
+    	holding.remove(c);
+    	bindingsDirty = true;
+    }
+    
+    //Indexes every control that has listeners, for dispatch().  Counts
+    //the buttons in each slot first so each slot's array is made once.
+    private void rebuildBindings()
+    {
+    	int[] counts = new int[buttonBindings.length];
+    	List<Control> axes = new ArrayList<Control>();
+    	for(int i = 0; i < controls.size(); i++)
+    	{
+    		Control c = controls.get(i);
+    		if(!c.hasListeners() || !inSnapshot(c))
+    		{
+    			continue;
+    		}
+    		if(c.getType() == ControlType.Button)
+    		{
+    			counts[buttonSlot(c)]++;
+    		}
+    		else
+    		{
+    			c.lastAxis = readAxis(c);
+    			axes.add(c);
+    		}
+    	}
+    	for(int i = 0; i < buttonBindings.length; i++)
+    	{
+    		buttonBindings[i] = counts[i] == 0 ? null : new Control[counts[i]];
+    	}
+    	for(int i = 0; i < controls.size(); i++)
+    	{
+    		Control c = controls.get(i);
+    		if(c.getType() == ControlType.Button && c.hasListeners() && inSnapshot(c))
+    		{
+    			int slot = buttonSlot(c);
+    			buttonBindings[slot][buttonBindings[slot].length - counts[slot]--] = c;
+    		}
+    	}
+    	axisBindings = axes.toArray(new Control[axes.size()]);
+    	bindingsDirty = false;
+    }
+    
+    private static int buttonSlot(Control c)
+    {
+    	return c.getPort() * (MAX_BUTTONS + 1) + c.getID();
+    }
+    
+    //Called by Control.setName() before the name changes, to keep the
+    //index up to date.  Refuses a name another control already has.
+    private void renameControl(Control control, String oldName, String newName)
+    {
+    	Control existing = controlIndex.get(foldName(newName));
+    	if(existing != null && existing != control)
+    	{
+    		throw new IllegalArgumentException("A control named " + newName + " already exists!");
+    	}
+    	String oldKey = foldName(oldName);
+    	if(controlIndex.get(oldKey) == control)
+    	{
+    		controlIndex.remove(oldKey);
+    	}
+    	controlIndex.put(foldName(newName), control);
+    	lookupCache.clear();
+    }
+    
+    private static String foldName(String name)
+    {
+    	return name.toLowerCase(Locale.ENGLISH);
     }
     
     /**
-     * Gets the data from an axis control object based on its name.
-     * @param name The name of the axis.
-     * @return The axis's status.
+     * A ControlHandle is returned when a control is added and reads that
+     * control directly, without any name lookup.  Keep the handle around
+     * and read from it each loop instead of passing the name.
      */
-    public double getAxisData(String name)
+    public class ControlHandle
     {
-    	for(Control c : controls)
+    	private Control control;
+    	
+    	private ControlHandle(Control control)
+    	{
+    		this.control = control;
+    	}
+    	
+    	/**
+    	 * @return The control this handle reads, or null if the control
+    	 * has been removed.
+    	 */
+    	public Control getControl()
     	{
-    		if(c.getName().equalsIgnoreCase(name))
+    		return control;
+    	}
+    	
+    	/**
+    	 * @return True if the control is still part of the CarbonUI.
+    	 */
+    	public boolean isValid()
+    	{
+    		return control != null;
+    	}
+    	
+    	/**
+    	 * @return The button's status, or BUTTON_NULL if this is not a
+    	 * button or has been removed.
+    	 */
+    	public boolean getButtonState()
+    	{
+    		Control c = control;
+    		if(c == null || c.getType() != ControlType.Button)
     		{
-    			if(c.getType() == ControlType.Axis)
-    			{
-    				return new Joystick(c.getPort()).getRawAxis(c.getID());
-    			}
-    			else
-    			{
-    				System.out.println(name + " exists, but is not an Axis control!");
-    			}
+    			return BUTTON_NULL;
     		}
+    		return readButton(c);
+    	}
+    	
+    	/**
+    	 * @return True if the button has just been pressed.
+    	 */
+    	public boolean getButtonPress()
+    	{
+    		Control c = control;
+    		if(c == null || c.getType() != ControlType.Button)
+    		{
+    			return BUTTON_NULL;
+    		}
+    		return readButtonPress(c);
+    	}
+    	
+    	/**
+    	 * @return True if the button has just been released.
+    	 */
+    	public boolean getButtonRelease()
+    	{
+    		Control c = control;
+    		if(c == null || c.getType() != ControlType.Button)
+    		{
+    			return BUTTON_NULL;
+    		}
+    		return readButtonRelease(c);
+    	}
+    	
+    	/**
+    	 * @return The axis's status, or AXIS_NULL if this is not an axis
+    	 * or has been removed.
+    	 */
+    	public double getAxisData()
+    	{
+    		Control c = control;
+    		if(c == null || c.getType() != ControlType.Axis)
+    		{
+    			return AXIS_NULL;
+    		}
+    		return readAxis(c);
     	}
-    	return AXIS_NULL;
     }
     
     /**
@@ -227,6 +1023,41 @@ public class CarbonUI
     	private LatchBoolean buttonLatch;
         private int port;
         private int id;
+        private CarbonUI owner;
+        private ControlHandle handle;
+        
+        /*
+         * Listeners registered through the CarbonUI, and what dispatch()
+         * needs to remember between loops to call them.
+         */
+        private List<ButtonListener> pressListeners = new ArrayList<ButtonListener>();
+        private List<ButtonListener> releaseListeners = new ArrayList<ButtonListener>();
+        private List<ButtonListener> holdListeners = new ArrayList<ButtonListener>();
+        private List<Long> holdDurations = new ArrayList<Long>();
+        private boolean[] holdFired = new boolean[0];
+        private long pressTime;
+        private List<AxisListener> axisListeners = new ArrayList<AxisListener>();
+        private List<Double> axisThresholds = new ArrayList<Double>();
+        private double lastAxis;
+        
+        /*
+         * Shaping for an axis, and its shaped value from the last poll().
+         */
+        private AxisShaper shaper;
+        private double shapedAxis;
+        
+        /*
+         * The owner's pollCount when poll() last captured this control,
+         * or 0 if it hasn't been since it was added or moved.
+         */
+        private long polledAt;
+        
+        /*
+         * Whether a profile swap has unbound this control, and the swap
+         * that last bound it.
+         */
+        private boolean unbound;
+        private long profileMark;
         
         /**
          * @param port The USB port of the controller that this piece of
@@ -253,6 +1084,7 @@ public class CarbonUI
         	this.type = type;
             this.port = port;
             this.id = id;
+            bindingsChanged();
         }
 
         /**
@@ -265,9 +1097,15 @@ public class CarbonUI
         
         /**
          * @param name The Name of this control.
+         * @throws IllegalArgumentException If the CarbonUI this control is
+         * in already has another control by that name.
          */
         public void setName(String name)
         {
+        	if(owner != null)
+        	{
+        		owner.renameControl(this, this.name, name);
+        	}
         	this.name = name;
         }
         
@@ -287,6 +1125,7 @@ public class CarbonUI
         public void setPort(int port) 
         {
             this.port = port;
+            bindingsChanged();
         }
 
         /**
@@ -303,6 +1142,7 @@ public class CarbonUI
         public void setID(int id) 
         {
             this.id = id;
+            bindingsChanged();
         }
         
         /**
@@ -319,6 +1159,7 @@ public class CarbonUI
         public void setControlType(ControlType type)
         {
         	this.type = type;
+        	bindingsChanged();
         }
         
         public LatchBoolean getLatch()
@@ -326,6 +1167,129 @@ public class CarbonUI
         	return this.buttonLatch;
         }
         
+        /**
+         * Shapes every read of this axis, from the next poll() on.  The
+         * raw value is still what gets recorded.
+         * @param shaper The shaping to apply, or null for raw values.
+         * @throws IllegalArgumentException If this control isn't an axis.
+         */
+        public void setShaper(AxisShaper shaper)
+        {
+        	if(shaper != null)
+        	{
+        		if(type != ControlType.Axis)
+        		{
+        			throw new IllegalArgumentException("Only axes can be shaped, and " + name + " is a " + type + "!");
+        		}
+        		shaper.reset();
+        		if(owner != null && owner.isCaptured(this))
+        		{
+        			shapedAxis = shaper.shape(owner.axisSnapshot[port][id], owner.clock.nanoTime());
+        		}
+        	}
+        	this.shaper = shaper;
+        }
+        
+        /**
+         * @return The shaping applied to this axis, or null if it is raw.
+         */
+        public AxisShaper getShaper()
+        {
+        	return shaper;
+        }
+        
+        //Tells the owner to re-index this control on the next dispatch(), and
+        //to read it live until the next poll() captures it where it is now.
+        private void bindingsChanged()
+        {
+        	polledAt = 0;
+        	unbound = false;
+        	if(owner != null)
+        	{
+        		owner.bindingsDirty = true;
+        	}
+        }
+        
+        private boolean hasListeners()
+        {
+        	return !pressListeners.isEmpty() || !releaseListeners.isEmpty()
+        			|| !holdListeners.isEmpty() || !axisListeners.isEmpty();
+        }
+        
+        private void clearListeners()
+        {
+        	pressListeners.clear();
+        	releaseListeners.clear();
+        	holdListeners.clear();
+        	holdDurations.clear();
+        	axisListeners.clear();
+        	axisThresholds.clear();
+        }
+        
+        private void fireAll(List<ButtonListener> listeners)
+        {
+        	for(int i = 0; i < listeners.size(); i++)
+        	{
+        		listeners.get(i).buttonEvent(this);
+        	}
+        }
+        
+        private void startHold(long now)
+        {
+        	pressTime = now;
+        	if(holdFired.length != holdListeners.size())
+        	{
+        		holdFired = new boolean[holdListeners.size()];
+        	}
+        	for(int i = 0; i < holdFired.length; i++)
+        	{
+        		holdFired[i] = false;
+        	}
+        }
+        
+        //Fires any holds that are due.  Returns true once all have fired.
+        private boolean checkHolds(long now)
+        {
+        	boolean done = true;
+        	for(int i = 0; i < holdFired.length && i < holdListeners.size(); i++)
+        	{
+        		if(!holdFired[i])
+        		{
+        			if(now - pressTime >= holdDurations.get(i))
+        			{
+        				holdFired[i] = true;
+        				holdListeners.get(i).buttonEvent(this);
+        			}
+        			else
+        			{
+        				done = false;
+        			}
+        		}
+        	}
+        	return done;
+        }
+        
+        //Fires the listener of every threshold between the last position
+        //and 'value'.
+        private void checkCrossings(double value)
+        {
+        	double last = lastAxis;
+        	if(value == last)
+        	{
+        		return;
+        	}
+        	lastAxis = value;
+        	boolean rising = value > last;
+        	for(int i = 0; i < axisThresholds.size(); i++)
+        	{
+        		double threshold = axisThresholds.get(i);
+        		if((last < threshold) != (value < threshold))
+        		{
+        			axisListeners.get(i).axisCrossed(this, value, rising);
+        		}
+        	}
+        }
+        
         public boolean equals(Object o)
         {
         	if(Control.this == o)
@@ -350,4 +1314,39 @@ public class CarbonUI
         	return false;
         }
     }
+    
+    /**
+     * A ControlProfile ready to be put in place by poll(): every control
+     * it might need to add, with its handle, and every axis's shaper, all
+     * made by setProfile() on the caller's thread.
+     */
+    private class ProfileBinding
+    {
+    	private ControlProfile profile;
+    	private String[] keys;
+    	private Control[] spares;
+    	private AxisShaper[] shapers;
+    	
+    	/*
+    	 * The control bound to each entry, filled in by applyProfile().
+    	 */
+    	private Control[] controls;
+    	
+    	private ProfileBinding(ControlProfile profile)
+    	{
+    		int size = profile.size();
+    		this.profile = profile;
+    		this.keys = new String[size];
+    		this.spares = new Control[size];
+    		this.shapers = new AxisShaper[size];
+    		this.controls = new Control[size];
+    		for(int i = 0; i < size; i++)
+    		{
+    			keys[i] = foldName(profile.getControlName(i));
+    			spares[i] = new Control(profile.getControlName(i), profile.getType(i), profile.getPort(i), profile.getID(i));
+    			spares[i].handle = new ControlHandle(spares[i]);
+    			shapers[i] = profile.createShaper(i);
+    		}
+    	}
+    }
 }
\ No newline at end of file
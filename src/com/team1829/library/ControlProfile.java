@@ -0,0 +1,331 @@
+package com.team1829.library;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.team1829.library.CarbonUI.ControlType;
+
+/**
+ * One driver's control mapping, read from a profile file and handed to
+ * CarbonUI.setProfile().  A ControlProfile can't be changed once it is
+ * made, so one can be swapped into a running CarbonUI from any thread.
+ *
+ * A profile file holds any number of profiles.  Each starts with a
+ * "profile" line naming it, followed by one line per control: its name,
+ * "axis" or "button", its port, its ID, and for axes any shaping
+ * options.  Blank lines and anything after a '#' are ignored:
+ * <pre>
+ * profile tank
+ *     left      axis   0 1  invert deadband=0.08 expo=3,0.6
+ *     right     axis   1 1  invert deadband=0.08 expo=3,0.6
+ *     shoot     button 1 1
+ *
+ * profile arcade
+ *     throttle  axis   0 1  invert deadband=0.1 slew=4
+ *     turn      axis   0 2  deadband=0.1 scale=0.7
+ *     shoot     button 0 6
+ * </pre>
+ * The shaping options are invert, deadband=D, expo=POWER,WEIGHT,
+ * scale=S, and slew=RATE, each meaning the same as the AxisShaper
+ * setter of the same name.
+ *
+ * Every line is checked when the file is parsed, so a typo shows up
+ * when the profiles are loaded, not when a driver picks one mid-match.
+ * Bindings are kept in parallel arrays, with each axis's lookup table
+ * already built.
+ */
+public class ControlProfile
+{
+	private String name;
+	private String[] names;
+	private ControlType[] types;
+	private int[] ports;
+	private int[] ids;
+	private AxisShaper[] shapers;
+
+	private ControlProfile(String name, List<Binding> bindings)
+	{
+		int size = bindings.size();
+		this.name = name;
+		this.names = new String[size];
+		this.types = new ControlType[size];
+		this.ports = new int[size];
+		this.ids = new int[size];
+		this.shapers = new AxisShaper[size];
+		for(int i = 0; i < size; i++)
+		{
+			Binding b = bindings.get(i);
+			names[i] = b.name;
+			types[i] = b.type;
+			ports[i] = b.port;
+			ids[i] = b.id;
+			shapers[i] = b.shaper;
+		}
+	}
+
+	/**
+	 * Reads every profile in a profile file.
+	 * @param in The file's contents.
+	 * @param source The file's name, for error messages.
+	 * @return The profiles, in the order they appear.
+	 * @throws IOException If the file can't be read or has a mistake in it.
+	 */
+	public static List<ControlProfile> parse(Reader in, String source) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(in);
+		List<ControlProfile> profiles = new ArrayList<ControlProfile>();
+		Set<String> profileNames = new HashSet<String>();
+		Set<String> controlNames = new HashSet<String>();
+		String profileName = null;
+		List<Binding> bindings = null;
+
+		String line;
+		int number = 0;
+		while((line = reader.readLine()) != null)
+		{
+			number++;
+			int comment = line.indexOf('#');
+			if(comment >= 0)
+			{
+				line = line.substring(0, comment);
+			}
+			line = line.trim();
+			if(line.length() == 0)
+			{
+				continue;
+			}
+			String[] words = line.split("\\s+");
+			String where = source + " line " + number + ": ";
+
+			if(words[0].equalsIgnoreCase("profile"))
+			{
+				if(words.length != 2)
+				{
+					throw new IOException(where + "expected 'profile <name>'");
+				}
+				if(!profileNames.add(foldName(words[1])))
+				{
+					throw new IOException(where + "profile '" + words[1] + "' is defined twice");
+				}
+				if(bindings != null)
+				{
+					profiles.add(new ControlProfile(profileName, bindings));
+				}
+				profileName = words[1];
+				bindings = new ArrayList<Binding>();
+				controlNames.clear();
+				continue;
+			}
+
+			if(bindings == null)
+			{
+				throw new IOException(where + "control before the first 'profile' line");
+			}
+			Binding binding = parseBinding(words, where);
+			if(!controlNames.add(foldName(binding.name)))
+			{
+				throw new IOException(where + "control '" + binding.name + "' is defined twice");
+			}
+			bindings.add(binding);
+		}
+		if(bindings != null)
+		{
+			profiles.add(new ControlProfile(profileName, bindings));
+		}
+		return profiles;
+	}
+
+	//Reads one "<name> <axis|button> <port> <id> [options]" line.
+	private static Binding parseBinding(String[] words, String where) throws IOException
+	{
+		if(words.length < 4)
+		{
+			throw new IOException(where + "expected '<name> <axis|button> <port> <id>'");
+		}
+		Binding b = new Binding();
+		b.name = words[0];
+		if(words[1].equalsIgnoreCase("axis"))
+		{
+			b.type = ControlType.Axis;
+		}
+		else if(words[1].equalsIgnoreCase("button"))
+		{
+			b.type = ControlType.Button;
+		}
+		else
+		{
+			throw new IOException(where + "unknown control type '" + words[1] + "'");
+		}
+		b.port = parseInt(words[2], where);
+		b.id = parseInt(words[3], where);
+		if(b.port < 0 || b.port >= CarbonUI.PORT_COUNT)
+		{
+			throw new IOException(where + "port must be 0 to " + (CarbonUI.PORT_COUNT - 1));
+		}
+		if(b.type == ControlType.Button && (b.id < 1 || b.id > CarbonUI.MAX_BUTTONS))
+		{
+			throw new IOException(where + "button ID must be 1 to " + CarbonUI.MAX_BUTTONS);
+		}
+		if(b.type == ControlType.Axis && (b.id < 0 || b.id >= CarbonUI.MAX_AXES))
+		{
+			throw new IOException(where + "axis ID must be 0 to " + (CarbonUI.MAX_AXES - 1));
+		}
+
+		if(words.length == 4)
+		{
+			return b;
+		}
+		if(b.type != ControlType.Axis)
+		{
+			throw new IOException(where + "only axes can have shaping options");
+		}
+		b.shaper = new AxisShaper();
+		for(int i = 4; i < words.length; i++)
+		{
+			String option = words[i].toLowerCase(Locale.ENGLISH);
+			int equals = option.indexOf('=');
+			String key = equals < 0 ? option : option.substring(0, equals);
+			String value = equals < 0 ? null : option.substring(equals + 1);
+			if(key.equals("invert") && value == null)
+			{
+				b.shaper.setInverted(true);
+			}
+			else if(key.equals("deadband") && value != null)
+			{
+				b.shaper.setDeadband(parseDouble(value, where));
+			}
+			else if(key.equals("expo") && value != null)
+			{
+				int comma = value.indexOf(',');
+				if(comma < 0)
+				{
+					throw new IOException(where + "expected 'expo=<power>,<weight>'");
+				}
+				double power = parseDouble(value.substring(0, comma), where);
+				if(!(power > 0))
+				{
+					throw new IOException(where + "expo power must be above 0");
+				}
+				b.shaper.setExpo(power, parseDouble(value.substring(comma + 1), where));
+			}
+			else if(key.equals("scale") && value != null)
+			{
+				b.shaper.setScale(parseDouble(value, where));
+			}
+			else if(key.equals("slew") && value != null)
+			{
+				b.shaper.setSlewRate(parseDouble(value, where));
+			}
+			else
+			{
+				throw new IOException(where + "unknown option '" + words[i] + "'");
+			}
+		}
+		return b;
+	}
+
+	private static int parseInt(String word, String where) throws IOException
+	{
+		try
+		{
+			return Integer.parseInt(word);
+		}
+		catch(NumberFormatException e)
+		{
+			throw new IOException(where + "'" + word + "' is not a whole number");
+		}
+	}
+
+	private static double parseDouble(String word, String where) throws IOException
+	{
+		try
+		{
+			return Double.parseDouble(word);
+		}
+		catch(NumberFormatException e)
+		{
+			throw new IOException(where + "'" + word + "' is not a number");
+		}
+	}
+
+	static String foldName(String name)
+	{
+		return name.toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * @return The name of this profile.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * @return The number of controls in this profile.
+	 */
+	public int size()
+	{
+		return names.length;
+	}
+
+	/**
+	 * @param index Which control, from 0 to size() - 1.
+	 * @return The control's name.
+	 */
+	public String getControlName(int index)
+	{
+		return names[index];
+	}
+
+	public ControlType getType(int index)
+	{
+		return types[index];
+	}
+
+	public int getPort(int index)
+	{
+		return ports[index];
+	}
+
+	public int getID(int index)
+	{
+		return ids[index];
+	}
+
+	/**
+	 * @param index Which control.
+	 * @return True if the control is an axis with shaping options.
+	 */
+	public boolean isShaped(int index)
+	{
+		return shapers[index] != null;
+	}
+
+	/**
+	 * Makes a control's AxisShaper.  Each call gives a new copy sharing
+	 * the profile's lookup table, so the profile itself never changes.
+	 * @param index Which control.
+	 * @return The shaper, or null if the control has no shaping.
+	 */
+	public AxisShaper createShaper(int index)
+	{
+		return shapers[index] == null ? null : new AxisShaper(shapers[index]);
+	}
+
+	//One control line, while the profile is being read.
+	private static class Binding
+	{
+		private String name;
+		private ControlType type;
+		private int port;
+		private int id;
+		private AxisShaper shaper;
+	}
+}
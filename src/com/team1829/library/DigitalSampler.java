@@ -0,0 +1,274 @@
+package com.team1829.library;
+
+import java.util.concurrent.TimeUnit;
+
+import com.team1829.library.hal.Clock;
+import com.team1829.library.hal.DigitalSource;
+import com.team1829.library.hal.Hardware;
+
+/**
+ * High-rate acquisition for a digital sensor such as a limit switch or
+ * beam break.  Reads the sensor at anywhere from 1 to 5 kHz on the
+ * CarbonScheduler, debounces it, and keeps every edge with the time it
+ * happened, so the robot loop sees every pulse exactly once even when
+ * the pulse is shorter than a loop.
+ *
+ * Debouncing is done by an integrator that counts up on each high
+ * reading and down on each low one, between 0 and the debounce count.
+ * The state only goes high when the count reaches the top and only goes
+ * low when it reaches 0, so chatter that is mostly one way can't flip
+ * the state back.  A debounce count of 1 follows every reading.  Edges
+ * are stamped with the hardware clock at the reading that confirmed
+ * them, which is at least 'debounce' readings after the first one.
+ *
+ * Edges go into a ring with a single writer, the scheduler thread, and
+ * a single reader, whoever calls drainEdges().  Neither side locks.  If
+ * the reader falls a whole ring behind, new edges are dropped and
+ * counted rather than overwriting ones not yet read; the edge counts
+ * include dropped edges.
+ */
+public class DigitalSampler
+{
+	public static final int MIN_SAMPLE_RATE = 1;
+	public static final int MAX_SAMPLE_RATE = 5000;
+
+	/**
+	 * Size of the edge ring.  A power of two so wrapping is a mask.
+	 */
+	public static final int EDGE_RING_SIZE = 1024;
+
+	private DigitalSource source;
+	private String name;
+	private Clock clock;
+	private int sampleRate;
+	private int debounce;
+	private CarbonScheduler.ScheduledTask task;
+
+	private long[] edgeTimes;
+	private boolean[] edgeRising;
+	private volatile long written;
+	private volatile long read;
+
+	private volatile boolean state;
+	private volatile long risingCount;
+	private volatile long fallingCount;
+	private volatile long droppedCount;
+	private volatile long sampleCount;
+
+	//Only touched by the sampling task.
+	private int integrator;
+	private boolean primed;
+
+	/**
+	 * Creates a sampler.  It does nothing until start() is called.
+	 * @param source The sensor to read.
+	 * @param sampleRateHz How often to read the sensor, 1 to 5000 Hz.
+	 * @param debounce How many readings in a row, net, it takes to change
+	 * state.  1 for no debouncing.
+	 * @param name The name the sampling task is measured under, such as
+	 * "CarbonDigitalInput 4.sampler".
+	 */
+	public DigitalSampler(DigitalSource source, int sampleRateHz, int debounce, String name)
+	{
+		if(sampleRateHz < MIN_SAMPLE_RATE)
+		{
+			sampleRateHz = MIN_SAMPLE_RATE;
+		}
+		if(sampleRateHz > MAX_SAMPLE_RATE)
+		{
+			sampleRateHz = MAX_SAMPLE_RATE;
+		}
+
+		this.source = source;
+		this.name = name;
+		this.clock = Hardware.getClock();
+		this.sampleRate = sampleRateHz;
+		this.debounce = Math.max(1, debounce);
+		edgeTimes = new long[EDGE_RING_SIZE];
+		edgeRising = new boolean[EDGE_RING_SIZE];
+		written = 0;
+		read = 0;
+	}
+
+	/**
+	 * Starts reading the sensor on the CarbonScheduler.  The first
+	 * reading sets the starting state without making an edge.
+	 */
+	public synchronized void start()
+	{
+		if(task != null)
+		{
+			return;
+		}
+		primed = false;
+		task = CarbonScheduler.getInstance().schedule(new SampleTask(), 1000000000L / sampleRate, TimeUnit.NANOSECONDS, name);
+	}
+
+	/**
+	 * Stops reading the sensor.  Edges already captured can still be
+	 * drained.
+	 */
+	public synchronized void stop()
+	{
+		if(task != null)
+		{
+			task.cancel();
+			task = null;
+		}
+	}
+
+	/**
+	 * @return True if the sensor is being read.
+	 */
+	public synchronized boolean isRunning()
+	{
+		return task != null;
+	}
+
+	/**
+	 * @return The debounced state as of the last reading.
+	 */
+	public boolean getState()
+	{
+		return state;
+	}
+
+	/**
+	 * @return The number of rising edges since the sampler was made.
+	 */
+	public long getRisingCount()
+	{
+		return risingCount;
+	}
+
+	/**
+	 * @return The number of falling edges since the sampler was made.
+	 */
+	public long getFallingCount()
+	{
+		return fallingCount;
+	}
+
+	/**
+	 * @return The number of edges dropped because the ring was full.
+	 */
+	public long getDroppedCount()
+	{
+		return droppedCount;
+	}
+
+	/**
+	 * @return The number of readings taken.
+	 */
+	public long getSampleCount()
+	{
+		return sampleCount;
+	}
+
+	/**
+	 * @return The number of edges waiting to be drained.
+	 */
+	public int getPendingEdges()
+	{
+		return (int)(written - read);
+	}
+
+	public int getSampleRate()
+	{
+		return sampleRate;
+	}
+
+	public int getDebounce()
+	{
+		return debounce;
+	}
+
+	/**
+	 * Takes edges off the ring, oldest first.  Only call this from one
+	 * thread.
+	 * @param times Where to put each edge's time, in nanoseconds on the
+	 * hardware clock.
+	 * @param rising Where to put whether each edge was rising.
+	 * @return The number of edges taken, up to the shorter array's length.
+	 */
+	public int drainEdges(long[] times, boolean[] rising)
+	{
+		long start = read;
+		int n = (int)Math.min(Math.min(times.length, rising.length), written - start);
+		for(int i = 0; i < n; i++)
+		{
+			int slot = (int)((start + i) & (EDGE_RING_SIZE - 1));
+			times[i] = edgeTimes[slot];
+			rising[i] = edgeRising[slot];
+		}
+		read = start + n;
+		return n;
+	}
+
+	/**
+	 * Throws away every edge not yet drained.
+	 */
+	public void clearEdges()
+	{
+		read = written;
+	}
+
+	/**
+	 * Task run by the CarbonScheduler at the sample rate.
+	 */
+	private class SampleTask implements Runnable
+	{
+		public void run()
+		{
+			boolean value = source.get();
+			sampleCount++;
+			if(!primed)
+			{
+				state = value;
+				integrator = value ? debounce : 0;
+				primed = true;
+				return;
+			}
+
+			if(value)
+			{
+				if(integrator < debounce && ++integrator == debounce && !state)
+				{
+					edge(true);
+				}
+			}
+			else
+			{
+				if(integrator > 0 && --integrator == 0 && state)
+				{
+					edge(false);
+				}
+			}
+		}
+
+		private void edge(boolean rising)
+		{
+			long now = clock.nanoTime();
+			state = rising;
+			if(rising)
+			{
+				risingCount++;
+			}
+			else
+			{
+				fallingCount++;
+			}
+
+			long count = written;
+			if(count - read >= EDGE_RING_SIZE)
+			{
+				droppedCount++;
+				return;
+			}
+			int slot = (int)(count & (EDGE_RING_SIZE - 1));
+			edgeTimes[slot] = now;
+			edgeRising[slot] = rising;
+			written = count + 1;
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package com.team1829.library;
+
+/**
+ * Edge detection for many booleans at once, such as every button on
+ * every controller.
+ *
+ * The states are packed 64 to a long word.  Each word keeps its current
+ * and previous state, so the inputs that just turned on, just turned
+ * off, or changed at all each come from one bitwise operation on the
+ * whole word:
+ * <pre>
+ * pressed  = current & ~previous
+ * released = ~current & previous
+ * changed  = current ^ previous
+ * </pre>
+ * Unlike a LatchBoolean, reading an edge doesn't consume it.  Every
+ * read between two update() calls gives the same answer, so asking for
+ * both the press and the release of one input in the same loop works.
+ */
+public class LatchBitSet
+{
+	/**
+	 * Number of booleans in one word.
+	 */
+	public static final int BITS_PER_WORD = 64;
+
+	private long[] current;
+	private long[] previous;
+
+	/**
+	 * Creates a LatchBitSet with every state off.
+	 * @param words The number of words, each holding 64 booleans.
+	 */
+	public LatchBitSet(int words)
+	{
+		current = new long[words];
+		previous = new long[words];
+	}
+
+	/**
+	 * @return The number of words.
+	 */
+	public int getWordCount()
+	{
+		return current.length;
+	}
+
+	/**
+	 * Moves a word's current state to its previous state and stores the
+	 * new one.  Call this once per loop for each word.
+	 * @param word The word to update.
+	 * @param state The new state, one bit per boolean.
+	 */
+	public void update(int word, long state)
+	{
+		previous[word] = current[word];
+		current[word] = state;
+	}
+
+	/**
+	 * Like update(), but the bits in 'primed' take the new state as their
+	 * previous state too, so they have no edge this time.  Use this for
+	 * booleans that weren't being watched before this reading.
+	 * @param word The word to update.
+	 * @param state The new state, one bit per boolean.
+	 * @param primed The bits to read for the first time.
+	 */
+	public void update(int word, long state, long primed)
+	{
+		previous[word] = (current[word] & ~primed) | (state & primed);
+		current[word] = state;
+	}
+
+	/**
+	 * Sets both the current and previous state of a word, so nothing in
+	 * it counts as an edge.  Use this for the first reading.
+	 * @param word The word to set.
+	 * @param state The state, one bit per boolean.
+	 */
+	public void prime(int word, long state)
+	{
+		previous[word] = state;
+		current[word] = state;
+	}
+
+	/**
+	 * Turns every state off, with no edges.
+	 */
+	public void reset()
+	{
+		for(int i = 0; i < current.length; i++)
+		{
+			current[i] = 0L;
+			previous[i] = 0L;
+		}
+	}
+
+	/**
+	 * @param word The word to read.
+	 * @return The current state of the word.
+	 */
+	public long getState(int word)
+	{
+		return current[word];
+	}
+
+	/**
+	 * @param word The word to read.
+	 * @return The bits that turned on in the last update.
+	 */
+	public long getPressed(int word)
+	{
+		return current[word] & ~previous[word];
+	}
+
+	/**
+	 * @param word The word to read.
+	 * @return The bits that turned off in the last update.
+	 */
+	public long getReleased(int word)
+	{
+		return ~current[word] & previous[word];
+	}
+
+	/**
+	 * @param word The word to read.
+	 * @return The bits that changed in the last update.
+	 */
+	public long getChanged(int word)
+	{
+		return current[word] ^ previous[word];
+	}
+
+	/**
+	 * @param word The word the boolean is in.
+	 * @param bit The boolean's bit, 0 to 63.
+	 * @return The boolean's current state.
+	 */
+	public boolean get(int word, int bit)
+	{
+		return (current[word] & (1L << bit)) != 0;
+	}
+
+	/**
+	 * @param word The word the boolean is in.
+	 * @param bit The boolean's bit, 0 to 63.
+	 * @return True if the boolean turned on in the last update.
+	 */
+	public boolean isPressed(int word, int bit)
+	{
+		return (getPressed(word) & (1L << bit)) != 0;
+	}
+
+	/**
+	 * @param word The word the boolean is in.
+	 * @param bit The boolean's bit, 0 to 63.
+	 * @return True if the boolean turned off in the last update.
+	 */
+	public boolean isReleased(int word, int bit)
+	{
+		return (getReleased(word) & (1L << bit)) != 0;
+	}
+}
@@ -0,0 +1,120 @@
+package com.team1829.library;
+
+/**
+ * Maps values from one range onto another, like Carbon.map(), but with
+ * the slope and intercept worked out once when it is made, so each use
+ * is one multiply and one add.  Optionally clamps the result to the
+ * output range.
+ */
+public class LinearMap
+{
+	private double slope;
+	private double intercept;
+	private boolean clamp;
+	private double low;
+	private double high;
+
+	/**
+	 * Creates a LinearMap with no clamping.
+	 * @param inMin The input value that maps to outMin.
+	 * @param inMax The input value that maps to outMax.
+	 * @param outMin The output for inMin.
+	 * @param outMax The output for inMax.
+	 */
+	public LinearMap(double inMin, double inMax, double outMin, double outMax)
+	{
+		this(inMin, inMax, outMin, outMax, false);
+	}
+
+	/**
+	 * Creates a LinearMap.
+	 * @param inMin The input value that maps to outMin.
+	 * @param inMax The input value that maps to outMax.
+	 * @param outMin The output for inMin.
+	 * @param outMax The output for inMax.
+	 * @param clamp Whether to keep outputs between outMin and outMax.
+	 */
+	public LinearMap(double inMin, double inMax, double outMin, double outMax, boolean clamp)
+	{
+		if(inMin == inMax)
+		{
+			throw new IllegalArgumentException("LinearMap input range is empty!");
+		}
+		this.slope = (outMax - outMin) / (inMax - inMin);
+		this.intercept = outMax - slope * inMax;
+		this.clamp = clamp;
+		this.low = Math.min(outMin, outMax);
+		this.high = Math.max(outMin, outMax);
+	}
+
+	/**
+	 * @param value The value to map.
+	 * @return The mapped value.
+	 */
+	public double apply(double value)
+	{
+		double result = value * slope + intercept;
+		if(clamp)
+		{
+			if(result < low)
+			{
+				return low;
+			}
+			if(result > high)
+			{
+				return high;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Maps every value in 'in' into the same place in 'out'.  The two
+	 * may be the same array.
+	 * @param in The values to map.
+	 * @param out Where to put the results, at least as long as 'in'.
+	 */
+	public void apply(double[] in, double[] out)
+	{
+		apply(in, out, in.length);
+	}
+
+	/**
+	 * Maps the first 'count' values in 'in' into 'out'.
+	 * @param in The values to map.
+	 * @param out Where to put the results.
+	 * @param count The number of values to map.
+	 */
+	public void apply(double[] in, double[] out, int count)
+	{
+		if(clamp)
+		{
+			for(int i = 0; i < count; i++)
+			{
+				out[i] = Math.min(Math.max(in[i] * slope + intercept, low), high);
+			}
+		}
+		else
+		{
+			for(int i = 0; i < count; i++)
+			{
+				out[i] = in[i] * slope + intercept;
+			}
+		}
+	}
+
+	public double getSlope()
+	{
+		return slope;
+	}
+
+	public double getIntercept()
+	{
+		return intercept;
+	}
+
+	public boolean isClamped()
+	{
+		return clamp;
+	}
+}
@@ -0,0 +1,257 @@
+package com.team1829.library;
+
+import com.team1829.library.metrics.CarbonMetrics;
+import com.team1829.library.metrics.Counter;
+
+/**
+ * Output stage that writes a set of motors together at one fixed point
+ * in the control loop.  Rather than every controller writing whenever
+ * its own ramp fires, motors added to a MotorGroup only record their
+ * commands, and flush() computes each ramped output and sends them all
+ * at once.
+ *
+ * Writes whose value hasn't moved by more than the group's epsilon
+ * since the last write are skipped, which keeps CAN traffic down when
+ * the robot is holding still.  A change to exactly zero is never
+ * skipped, however small, so motors are never left creeping; zero
+ * written again once it has already been sent is skipped like any
+ * other repeat.  The number of writes sent and skipped by the last
+ * flush() is kept for diagnostics, and skips are also counted in the
+ * CarbonMetrics counter "MotorGroup.skips".
+ *
+ * Call flush() once per loop, after all of the set() calls, or start()
+ * the group to have the CarbonScheduler flush it at a fixed rate.
+ */
+public class MotorGroup
+{
+	/**
+	 * Default change in output below which a write is skipped.
+	 */
+	public static final double DEFAULT_EPSILON = 0.0001;
+	
+	private RampedMotor[] motors;
+	private double[] lastWritten;
+	private boolean[] hasWritten;
+	private int count;
+	private double epsilon;
+	private CarbonScheduler.ScheduledTask flushTask;
+	
+	private int cycleWrites;
+	private int cycleSkips;
+	private long totalWrites;
+	private long totalSkips;
+	private Counter skipMetric;
+	
+	/**
+	 * Creates an empty MotorGroup with the default epsilon.
+	 */
+	public MotorGroup()
+	{
+		this(DEFAULT_EPSILON);
+	}
+	
+	/**
+	 * Creates an empty MotorGroup.
+	 * @param epsilon Change in output below which a write is skipped.
+	 */
+	public MotorGroup(double epsilon)
+	{
+		motors = new RampedMotor[8];
+		lastWritten = new double[8];
+		hasWritten = new boolean[8];
+		count = 0;
+		skipMetric = CarbonMetrics.counter("MotorGroup.skips");
+		setEpsilon(epsilon);
+	}
+	
+	/**
+	 * Adds a motor to the group.  From now on it is only written by this
+	 * group's flush().  Use getRamp() to add a CarbonTalon or
+	 * CarbonCANTalon.
+	 * @param motor The motor to add.
+	 * @return False if the motor already belongs to a group.
+	 */
+	public synchronized boolean add(RampedMotor motor)
+	{
+		if(motor.getGroup() != null)
+		{
+			return false;
+		}
+		if(count == motors.length)
+		{
+			motors = grow(motors);
+			double[] newWritten = new double[count * 2];
+			System.arraycopy(lastWritten, 0, newWritten, 0, count);
+			lastWritten = newWritten;
+			boolean[] newHasWritten = new boolean[count * 2];
+			System.arraycopy(hasWritten, 0, newHasWritten, 0, count);
+			hasWritten = newHasWritten;
+		}
+		motors[count] = motor;
+		hasWritten[count] = false;
+		count++;
+		motor.setGroup(this);
+		return true;
+	}
+	
+	/**
+	 * Removes a motor from the group.  It goes back to writing on its own.
+	 * @param motor The motor to remove.
+	 * @return False if the motor wasn't in this group.
+	 */
+	public synchronized boolean remove(RampedMotor motor)
+	{
+		for(int i = 0; i < count; i++)
+		{
+			if(motors[i] == motor)
+			{
+				count--;
+				motors[i] = motors[count];
+				lastWritten[i] = lastWritten[count];
+				hasWritten[i] = hasWritten[count];
+				motors[count] = null;
+				motor.setGroup(null);
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return The number of motors in the group.
+	 */
+	public synchronized int size()
+	{
+		return count;
+	}
+	
+	/**
+	 * @param epsilon Change in output below which a write is skipped.
+	 * Zero only skips writes of the exact same value.
+	 */
+	public synchronized void setEpsilon(double epsilon)
+	{
+		this.epsilon = epsilon < 0 ? 0 : epsilon;
+	}
+	
+	public synchronized double getEpsilon()
+	{
+		return epsilon;
+	}
+	
+	/**
+	 * Computes every motor's output and writes the ones that changed.
+	 * @return The number of writes sent.
+	 */
+	public synchronized int flush()
+	{
+		int writes = 0;
+		for(int i = 0; i < count; i++)
+		{
+			double value = motors[i].computeOutput();
+			if(hasWritten[i] && isRedundant(value, lastWritten[i]))
+			{
+				continue;
+			}
+			motors[i].writeOutput(value);
+			lastWritten[i] = value;
+			hasWritten[i] = true;
+			writes++;
+		}
+		cycleWrites = writes;
+		cycleSkips = count - writes;
+		totalWrites += writes;
+		totalSkips += count - writes;
+		skipMetric.add(count - writes);
+		return writes;
+	}
+	
+	/**
+	 * Forces every motor to be written on the next flush(), even if its
+	 * output hasn't changed.
+	 */
+	public synchronized void invalidate()
+	{
+		for(int i = 0; i < count; i++)
+		{
+			hasWritten[i] = false;
+		}
+	}
+	
+	/**
+	 * Has the CarbonScheduler flush this group every 'period' milliseconds.
+	 * @param period The time between flushes, in milliseconds.
+	 */
+	public synchronized void start(long period)
+	{
+		stop();
+		flushTask = CarbonScheduler.getInstance().schedule(new Runnable()
+		{
+			public void run()
+			{
+				flush();
+			}
+		}, period, "MotorGroup");
+	}
+	
+	/**
+	 * Stops flushing on the scheduler.
+	 */
+	public synchronized void stop()
+	{
+		if(flushTask != null)
+		{
+			flushTask.cancel();
+			flushTask = null;
+		}
+	}
+	
+	/**
+	 * @return The number of writes sent by the last flush().
+	 */
+	public synchronized int getCycleWrites()
+	{
+		return cycleWrites;
+	}
+	
+	/**
+	 * @return The number of writes skipped by the last flush().
+	 */
+	public synchronized int getCycleSkips()
+	{
+		return cycleSkips;
+	}
+	
+	/**
+	 * @return The number of writes sent since the group was made.
+	 */
+	public synchronized long getTotalWrites()
+	{
+		return totalWrites;
+	}
+	
+	/**
+	 * @return The number of writes skipped since the group was made.
+	 */
+	public synchronized long getTotalSkips()
+	{
+		return totalSkips;
+	}
+	
+	//A stop is always sent, however close the last output was to zero.
+	private boolean isRedundant(double value, double last)
+	{
+		if(value == last)
+		{
+			return true;
+		}
+		return value != 0.0 && Math.abs(value - last) <= epsilon;
+	}
+	
+	private static RampedMotor[] grow(RampedMotor[] array)
+	{
+		RampedMotor[] bigger = new RampedMotor[array.length * 2];
+		System.arraycopy(array, 0, bigger, 0, array.length);
+		return bigger;
+	}
+}
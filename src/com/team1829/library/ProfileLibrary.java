@@ -0,0 +1,151 @@
+package com.team1829.library;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Every ControlProfile in a profile file, looked up by name.
+ *
+ * preload() reads and checks the file on a background thread, so it can
+ * be started in robotInit() without holding up anything else.  The
+ * first get() waits for it to finish if it hasn't yet:
+ * <pre>
+ * ProfileLibrary profiles = ProfileLibrary.preload(new File("/home/lvuser/controls.txt"));
+ * ...
+ * ui.setProfile(profiles.get("arcade"));
+ * </pre>
+ */
+public class ProfileLibrary
+{
+	private FutureTask<Map<String, ControlProfile>> task;
+
+	private ProfileLibrary(final File file)
+	{
+		task = new FutureTask<Map<String, ControlProfile>>(new Callable<Map<String, ControlProfile>>()
+		{
+			public Map<String, ControlProfile> call() throws IOException
+			{
+				Reader reader = new FileReader(file);
+				try
+				{
+					List<ControlProfile> profiles = ControlProfile.parse(reader, file.getName());
+					Map<String, ControlProfile> byName = new HashMap<String, ControlProfile>();
+					for(ControlProfile profile : profiles)
+					{
+						byName.put(ControlProfile.foldName(profile.getName()), profile);
+					}
+					return Collections.unmodifiableMap(byName);
+				}
+				finally
+				{
+					reader.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Reads a profile file now.
+	 * @param file The profile file.
+	 * @return The profiles in it.
+	 * @throws IOException If the file can't be read or has a mistake in it.
+	 */
+	public static ProfileLibrary load(File file) throws IOException
+	{
+		ProfileLibrary library = new ProfileLibrary(file);
+		library.task.run();
+		try
+		{
+			library.task.get();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof IOException)
+			{
+				throw (IOException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		return library;
+	}
+
+	/**
+	 * Starts reading a profile file on a background thread.
+	 * @param file The profile file.
+	 * @return The profiles in it, once they're read.
+	 */
+	public static ProfileLibrary preload(File file)
+	{
+		ProfileLibrary library = new ProfileLibrary(file);
+		Thread loader = new Thread(library.task, "ProfileLibrary");
+		loader.setDaemon(true);
+		loader.start();
+		return library;
+	}
+
+	/**
+	 * @return True once the file has been read, or failed to be.
+	 */
+	public boolean isLoaded()
+	{
+		return task.isDone();
+	}
+
+	/**
+	 * Finds a profile by name, ignoring case.  Waits for the file to be
+	 * read if it hasn't been yet.
+	 * @param name The profile's name.
+	 * @return The profile, or null if there is no such profile or the
+	 * file couldn't be read.
+	 */
+	public ControlProfile get(String name)
+	{
+		Map<String, ControlProfile> profiles = getProfiles();
+		if(profiles == null)
+		{
+			return null;
+		}
+		ControlProfile profile = profiles.get(ControlProfile.foldName(name));
+		if(profile == null)
+		{
+			System.out.println("There is no control profile named " + name + "!");
+		}
+		return profile;
+	}
+
+	/**
+	 * Waits for the file to be read if it hasn't been yet.
+	 * @return Every profile keyed by its lower-case name, or null if the
+	 * file couldn't be read.
+	 */
+	public Map<String, ControlProfile> getProfiles()
+	{
+		try
+		{
+			return task.get();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		catch(ExecutionException e)
+		{
+			System.out.println("Could not load control profiles: " + e.getCause().getMessage());
+			return null;
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package com.team1829.library;
+
+import com.team1829.library.hal.MotorOutput;
+import com.team1829.library.metrics.CarbonMetrics;
+import com.team1829.library.metrics.Counter;
+
+/**
+ * Ramping logic shared by CarbonTalon and CarbonCANTalon.  Wraps any
+ * MotorOutput, so the same ramp can drive a real motor controller or a
+ * simulated one.
+ *
+ * When ramping is enabled, set() records a target and a CarbonRamp
+ * moves the output toward it based on the real time that has passed.
+ * The ramp is advanced both by a task on the CarbonScheduler and inline
+ * by each set() call, so it holds its rate whether or not the scheduler
+ * thread is keeping up.  When disabled, set() writes straight through.
+ *
+ * A RampedMotor added to a MotorGroup never writes on its own.  set()
+ * only records the command, and the group computes and writes every
+ * member's output together once per loop.
+ */
+public class RampedMotor implements MotorOutput
+{
+	public static final double RAMP_STEP = 0.05;
+	public static final long RAMP_TIME = 20;
+	
+	private MotorOutput output;
+	private String name;
+	private int deviceId;
+	private Counter writeMetric;
+	private CarbonRamp ramp;
+	private CarbonScheduler.ScheduledTask rampTask;
+	private boolean rampEnabled = false;
+	private MotorGroup group;
+	private double command = 0.0;
+	
+	private double rampStep = RAMP_STEP; //default values
+	private long rampTime = RAMP_TIME; //default values
+	
+	/**
+	 * Creates a RampedMotor that drives 'output'.  Ramping starts out
+	 * disabled.  The ramp moves 'step' every 'time' milliseconds, i.e.
+	 * at step / time units per millisecond.  A MotorOutput has no channel
+	 * to name it by, so give each motor a name of its own; motors sharing
+	 * a name share their recordings and metrics.
+	 * @param output The motor to drive.
+	 * @param step How far the output moves toward the target each step.
+	 * @param time The time between steps, in milliseconds.
+	 * @param name The name this motor is recorded and measured under.
+	 */
+	public RampedMotor(MotorOutput output, double step, long time, String name)
+	{
+		this.output = output;
+		this.name = name;
+		this.deviceId = CarbonRecorder.registerDevice(name);
+		this.writeMetric = CarbonMetrics.counter(name + ".writes");
+		this.ramp = new CarbonRamp();
+		setRampStep(step);
+		setRampTime(time);
+	}
+	
+	/**
+	 * Creates a RampedMotor with the default ramp step and time.
+	 * @param output The motor to drive.
+	 * @param name The name this motor is recorded and measured under.
+	 */
+	public RampedMotor(MotorOutput output, String name)
+	{
+		this(output, RAMP_STEP, RAMP_TIME, name);
+	}
+	
+	public synchronized void setRampEnabled(boolean enabled)
+	{
+		if(rampEnabled == enabled)
+		{
+			return;
+		}
+		
+		rampEnabled = enabled;
+		if(rampEnabled)
+		{
+			//Start ramping from wherever the motor is now.
+			ramp.reset(group == null ? output.get() : command);
+			scheduleRamp();
+		}
+		else if(rampTask != null)
+		{
+			rampTask.cancel();
+			rampTask = null;
+		}
+	}
+	
+	public synchronized boolean isRampEnabled()
+	{
+		return rampEnabled;
+	}
+	
+	public synchronized void setRampStep(double size)
+	{
+		if(size < 0)
+		{
+			size = 0;
+		}
+		
+		this.rampStep = size;
+		updateSlewRate();
+	}
+	
+	public synchronized double getRampStep()
+	{
+		return this.rampStep;
+	}
+	
+	/**
+	 * Sets how often the scheduler advances the ramp.  Together with the
+	 * ramp step this sets the ramp's rate.
+	 * @param time The time between steps, in milliseconds.
+	 */
+	public synchronized void setRampTime(long time)
+	{
+		if(time < 20)
+		{
+			time = 20;
+		}
+		
+		this.rampTime = time;
+		updateSlewRate();
+		if(rampTask != null)
+		{
+			rampTask.cancel();
+			rampTask = null;
+			scheduleRamp();
+		}
+	}
+	
+	public synchronized long getRampTime()
+	{
+		return this.rampTime;
+	}
+	
+	/**
+	 * Sets the ramp rate directly rather than as a step and a time.
+	 * @param unitsPerSecond The fastest the output may change.
+	 */
+	public synchronized void setSlewRate(double unitsPerSecond)
+	{
+		ramp.setSlewRate(unitsPerSecond);
+		rampStep = ramp.getSlewRate() * rampTime / 1000.0;
+	}
+	
+	public synchronized double getSlewRate()
+	{
+		return ramp.getSlewRate();
+	}
+	
+	/**
+	 * Smooths the start and end of each ramp with an S-curve.  Pass 0 to
+	 * turn either limit off.
+	 * @param accelLimit Largest change of the rate, in units per second squared.
+	 * @param jerkLimit Largest change of the acceleration, in units per
+	 * second cubed.
+	 */
+	public synchronized void setProfileLimits(double accelLimit, double jerkLimit)
+	{
+		ramp.setProfileLimits(accelLimit, jerkLimit);
+	}
+	
+	/**
+	 * @return The CarbonRamp that computes this motor's output.
+	 */
+	public CarbonRamp getRamp()
+	{
+		return ramp;
+	}
+	
+	/**
+	 * @return The power the ramp is heading toward.
+	 */
+	public synchronized double getTarget()
+	{
+		if(rampEnabled)
+		{
+			return ramp.getTarget();
+		}
+		return group == null ? output.get() : command;
+	}
+	
+	/**
+	 * @return The MotorGroup that writes this motor, or null if it
+	 * writes on its own.
+	 */
+	public synchronized MotorGroup getGroup()
+	{
+		return group;
+	}
+	
+	/**
+	 * Sets motor speed, applying a ramp if
+	 * it's enabled.
+	 */
+	public synchronized void set(double power)
+	{
+		command = power;
+		if(rampEnabled)
+		{
+			ramp.setTarget(power);
+			step();
+		}
+		else if(group == null)
+		{
+			emit(power);
+		}
+	}
+	
+	/**
+	 * @return The power currently being output.
+	 */
+	public double get()
+	{
+		return output.get();
+	}
+	
+	//Advances the ramp to the current time and writes the result.
+	private synchronized void step()
+	{
+		if(rampEnabled && group == null)
+		{
+			emit(ramp.update());
+		}
+	}
+	
+	//Only ramps that write on their own need a scheduler task.
+	private void scheduleRamp()
+	{
+		if(group == null)
+		{
+			rampTask = CarbonScheduler.getInstance().schedule(new RampTask(), rampTime, name);
+		}
+	}
+	
+	//Called by MotorGroup when this motor joins or leaves it.
+	synchronized void setGroup(MotorGroup newGroup)
+	{
+		if(group == null && newGroup != null)
+		{
+			command = rampEnabled ? ramp.getTarget() : output.get();
+		}
+		group = newGroup;
+		if(rampTask != null)
+		{
+			rampTask.cancel();
+			rampTask = null;
+		}
+		if(rampEnabled)
+		{
+			scheduleRamp();
+		}
+	}
+	
+	//Called by MotorGroup to find what this motor should output now.
+	synchronized double computeOutput()
+	{
+		return rampEnabled ? ramp.update() : command;
+	}
+	
+	//Called by MotorGroup to write the computed output.
+	void writeOutput(double power)
+	{
+		emit(power);
+	}
+	
+	//Every write to the motor goes through here so it gets recorded.
+	private void emit(double power)
+	{
+		output.set(power);
+		writeMetric.increment();
+		CarbonRecorder.record(deviceId, CarbonRecorder.TYPE_MOTOR, 0, command, power);
+	}
+	
+	private void updateSlewRate()
+	{
+		ramp.setSlewRate(rampStep * 1000.0 / rampTime);
+	}
+	
+	/**
+	 * Task run by the CarbonScheduler in order to process the 
+	 * ramp of this RampedMotor.
+	 */
+	public class RampTask implements Runnable
+	{
+		public void run() 
+		{
+			step();
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package com.team1829.library;
+
+/**
+ * Keeps the median of the last N integer samples without re-sorting
+ * the window every time a sample arrives.
+ *
+ * The samples are held twice: once in arrival order so the oldest one
+ * can be found, and once in sorted order.  Each new sample replaces the
+ * oldest one in the sorted window using a binary search to find both
+ * positions and a single System.arraycopy to close the gap, so nothing
+ * is allocated after construction.
+ *
+ * The median is the element at index (size / 2) of the sorted window,
+ * the same rule CarbonAnalogInput has always used.
+ */
+public class RollingMedian
+{
+	private int[] window;
+	private int[] sorted;
+	private int index;
+
+	/**
+	 * Creates a RollingMedian over the last 'size' samples.  The window
+	 * starts out filled with zeros.
+	 * @param size The number of samples to take the median of.
+	 */
+	public RollingMedian(int size)
+	{
+		if(size < 1)
+		{
+			size = 1;
+		}
+		window = new int[size];
+		sorted = new int[size];
+		index = 0;
+	}
+
+	/**
+	 * Adds a sample to the window, dropping the oldest one.
+	 * @param value The new sample.
+	 */
+	public void add(int value)
+	{
+		int oldValue = window[index];
+		window[index] = value;
+		index = (index + 1) % window.length;
+		replace(oldValue, value);
+	}
+
+	/**
+	 * @return The median of the samples in the window.
+	 */
+	public int getMedian()
+	{
+		return sorted[sorted.length / 2];
+	}
+
+	/**
+	 * @return The number of samples in the window.
+	 */
+	public int getSize()
+	{
+		return window.length;
+	}
+
+	/**
+	 * Empties the window back to all zeros.
+	 */
+	public void reset()
+	{
+		for(int i = 0; i < window.length; i++)
+		{
+			window[i] = 0;
+			sorted[i] = 0;
+		}
+		index = 0;
+	}
+
+	//Swaps one occurrence of oldValue in the sorted window for newValue.
+	private void replace(int oldValue, int newValue)
+	{
+		replace(sorted, 0, sorted.length, oldValue, newValue);
+	}
+	
+	/**
+	 * Swaps one occurrence of oldValue for newValue in a sorted window
+	 * that lives inside a larger array, keeping it sorted.  Used by
+	 * AnalogBank, which keeps every channel's window in one array.
+	 * @param sorted The array holding the window.
+	 * @param from Index of the first element of the window.
+	 * @param size Number of elements in the window.
+	 * @param oldValue A value in the window to remove.
+	 * @param newValue The value to put in its place.
+	 */
+	static void replace(int[] sorted, int from, int size, int oldValue, int newValue)
+	{
+		if(newValue == oldValue)
+		{
+			return;
+		}
+		
+		int to = from + size;
+		int i = find(sorted, from, to, oldValue);
+		if(newValue > oldValue)
+		{
+			//Everything between the old slot and the new one moves down.
+			int k = firstAtLeast(sorted, i + 1, to, newValue);
+			System.arraycopy(sorted, i + 1, sorted, i, k - 1 - i);
+			sorted[k - 1] = newValue;
+		}
+		else
+		{
+			//Everything between the new slot and the old one moves up.
+			int k = firstAbove(sorted, from, i, newValue);
+			System.arraycopy(sorted, k, sorted, k + 1, i - k);
+			sorted[k] = newValue;
+		}
+	}
+	
+	//Index in [from, to) of any element equal to value.  The value is
+	//always present.
+	private static int find(int[] sorted, int from, int to, int value)
+	{
+		int low = from;
+		int high = to - 1;
+		while(low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			if(sorted[mid] < value)
+			{
+				low = mid + 1;
+			}
+			else if(sorted[mid] > value)
+			{
+				high = mid - 1;
+			}
+			else
+			{
+				return mid;
+			}
+		}
+		return low;
+	}
+	
+	//First index in [from, to) whose element is >= value, or 'to'.
+	private static int firstAtLeast(int[] sorted, int from, int to, int value)
+	{
+		while(from < to)
+		{
+			int mid = (from + to) >>> 1;
+			if(sorted[mid] < value)
+			{
+				from = mid + 1;
+			}
+			else
+			{
+				to = mid;
+			}
+		}
+		return from;
+	}
+	
+	//First index in [from, to) whose element is > value, or 'to'.
+	private static int firstAbove(int[] sorted, int from, int to, int value)
+	{
+		while(from < to)
+		{
+			int mid = (from + to) >>> 1;
+			if(sorted[mid] <= value)
+			{
+				from = mid + 1;
+			}
+			else
+			{
+				to = mid;
+			}
+		}
+		return from;
+	}
+}
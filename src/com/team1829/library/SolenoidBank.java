@@ -0,0 +1,312 @@
+package com.team1829.library;
+
+import com.team1829.library.hal.Hardware;
+import com.team1829.library.hal.SolenoidOutput;
+import com.team1829.library.metrics.CarbonMetrics;
+import com.team1829.library.metrics.Counter;
+
+/**
+ * Every solenoid on one solenoid module, set together.
+ *
+ * Calls to set() during a loop only change a bitmask; call flush() once
+ * at the end of the loop and only the channels whose state actually
+ * changed are written, however many times they were set in between.
+ * WPILib only writes solenoids one channel at a time, so a flush is one
+ * pass over the changed bits rather than a single module write.
+ *
+ * Double solenoids are made with pair().  A pair can never have both of
+ * its channels on: setting one side turns the other off in the same
+ * bitmask, and flush() writes every channel turning off before any
+ * channel turning on, so the two valves are never both powered even for
+ * a moment.
+ *
+ * Channels used by a SolenoidBank shouldn't also have a CarbonSolenoid.
+ * A SolenoidBank is not thread-safe; set and flush it from the robot
+ * loop.
+ */
+public class SolenoidBank
+{
+	/**
+	 * The highest channel number a bank can hold.
+	 */
+	public static final int MAX_CHANNEL = 31;
+
+	private int module;
+	private SolenoidOutput[] outputs;
+
+	//Bit N is channel N.
+	private int staged;
+	private int touched;
+	private int current;
+	private int written;
+	private int used;
+	private int[] partners;
+
+	private long writes;
+	private long suppressed;
+	private int deviceId;
+	private Counter writeMetric;
+	private Counter suppressedMetric;
+
+	/**
+	 * Creates a SolenoidBank for one solenoid module.
+	 * @param module The module number.
+	 */
+	public SolenoidBank(int module)
+	{
+		this.module = module;
+		this.outputs = new SolenoidOutput[MAX_CHANNEL + 1];
+		this.partners = new int[MAX_CHANNEL + 1];
+		for(int i = 0; i < partners.length; i++)
+		{
+			partners[i] = -1;
+		}
+		String name = "SolenoidBank " + module;
+		deviceId = CarbonRecorder.registerDevice(name);
+		writeMetric = CarbonMetrics.counter(name + ".writes");
+		suppressedMetric = CarbonMetrics.counter(name + ".suppressed");
+	}
+
+	/**
+	 * Sets a channel, to be written by the next flush().  If the channel
+	 * is half of a pair and is turned on, the other half is turned off.
+	 * @param channel The channel.
+	 * @param on True to turn it on.
+	 */
+	public void set(int channel, boolean on)
+	{
+		int bit = bit(channel);
+		output(channel);
+		touched |= bit;
+		if(on)
+		{
+			staged |= bit;
+			int partner = partners[channel];
+			if(partner >= 0)
+			{
+				staged &= ~(1 << partner);
+				touched |= 1 << partner;
+			}
+		}
+		else
+		{
+			staged &= ~bit;
+		}
+	}
+
+	/**
+	 * @param channel The channel.
+	 * @return The state last set, whether or not it has been flushed.
+	 */
+	public boolean get(int channel)
+	{
+		return (staged & bit(channel)) != 0;
+	}
+
+	/**
+	 * Pairs two channels into a double solenoid.
+	 * @param forward The channel that pushes the cylinder out.
+	 * @param reverse The channel that pulls it back in.
+	 * @return The pair.
+	 */
+	public Pair pair(int forward, int reverse)
+	{
+		bit(forward);
+		bit(reverse);
+		if(forward == reverse || partners[forward] >= 0 || partners[reverse] >= 0)
+		{
+			throw new IllegalArgumentException("SolenoidBank channels " + forward + " and " + reverse + " can't be paired!");
+		}
+		output(forward);
+		output(reverse);
+		partners[forward] = reverse;
+		partners[reverse] = forward;
+
+		//If both were already on, leave neither on.
+		if(get(forward) && get(reverse))
+		{
+			set(forward, false);
+			set(reverse, false);
+		}
+		return new Pair(forward, reverse);
+	}
+
+	/**
+	 * Writes every channel whose state has changed since the last flush.
+	 * @return The number of channels written.
+	 */
+	public int flush()
+	{
+		//Channels never written go out the first time they're set.
+		int changed = ((staged ^ current) | (touched & ~written)) & touched;
+		int unchanged = touched & ~changed;
+		touched = 0;
+		if(unchanged != 0)
+		{
+			int count = Integer.bitCount(unchanged);
+			suppressed += count;
+			suppressedMetric.add(count);
+		}
+		if(changed == 0)
+		{
+			return 0;
+		}
+
+		//Everything turning off goes before anything turning on.
+		writeBits(changed & ~staged, false);
+		writeBits(changed & staged, true);
+		current = (current & ~changed) | (staged & changed);
+		written |= changed;
+
+		int count = Integer.bitCount(changed);
+		writes += count;
+		writeMetric.add(count);
+		CarbonRecorder.record(deviceId, CarbonRecorder.TYPE_SOLENOID, module, current, changed);
+		return count;
+	}
+
+	private void writeBits(int bits, boolean on)
+	{
+		while(bits != 0)
+		{
+			int channel = Integer.numberOfTrailingZeros(bits);
+			bits &= bits - 1;
+			outputs[channel].set(on);
+		}
+	}
+
+	/**
+	 * Forgets what has been written, so the next flush() writes every
+	 * channel in use, changed or not.
+	 */
+	public void invalidate()
+	{
+		written = 0;
+		touched = used;
+	}
+
+	/**
+	 * @return The state written by the last flush(), bit N for channel N.
+	 */
+	public int getState()
+	{
+		return current;
+	}
+
+	/**
+	 * @return The number of channel writes made by flush().
+	 */
+	public long getWrites()
+	{
+		return writes;
+	}
+
+	/**
+	 * @return The number of channels set that didn't need writing.
+	 */
+	public long getSuppressed()
+	{
+		return suppressed;
+	}
+
+	public int getModule()
+	{
+		return module;
+	}
+
+	//Gets the channel's output, creating it the first time.
+	private SolenoidOutput output(int channel)
+	{
+		if(outputs[channel] == null)
+		{
+			outputs[channel] = Hardware.getFactory().getSolenoidOutput(module, channel);
+			used |= 1 << channel;
+		}
+		return outputs[channel];
+	}
+
+	private static int bit(int channel)
+	{
+		if(channel < 0 || channel > MAX_CHANNEL)
+		{
+			throw new IllegalArgumentException("Solenoid channel " + channel + " is out of range!");
+		}
+		return 1 << channel;
+	}
+
+	/**
+	 * A double solenoid: two channels of the bank that are never both on.
+	 */
+	public class Pair
+	{
+		public static final int REVERSE = -1;
+		public static final int OFF = 0;
+		public static final int FORWARD = 1;
+
+		private int forward;
+		private int reverse;
+
+		private Pair(int forward, int reverse)
+		{
+			this.forward = forward;
+			this.reverse = reverse;
+		}
+
+		/**
+		 * @param direction FORWARD, REVERSE, or OFF.
+		 */
+		public void set(int direction)
+		{
+			if(direction > 0)
+			{
+				SolenoidBank.this.set(forward, true);
+			}
+			else if(direction < 0)
+			{
+				SolenoidBank.this.set(reverse, true);
+			}
+			else
+			{
+				SolenoidBank.this.set(forward, false);
+				SolenoidBank.this.set(reverse, false);
+			}
+		}
+
+		public void setForward()
+		{
+			set(FORWARD);
+		}
+
+		public void setReverse()
+		{
+			set(REVERSE);
+		}
+
+		public void setOff()
+		{
+			set(OFF);
+		}
+
+		/**
+		 * @return FORWARD, REVERSE, or OFF, as last set.
+		 */
+		public int get()
+		{
+			if(SolenoidBank.this.get(forward))
+			{
+				return FORWARD;
+			}
+			return SolenoidBank.this.get(reverse) ? REVERSE : OFF;
+		}
+
+		public int getForwardChannel()
+		{
+			return forward;
+		}
+
+		public int getReverseChannel()
+		{
+			return reverse;
+		}
+	}
+}
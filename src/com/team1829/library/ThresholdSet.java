@@ -0,0 +1,263 @@
+package com.team1829.library;
+
+import java.util.Arrays;
+
+/**
+ * Watches one signal against many thresholds at once, such as every
+ * setpoint of an elevator.
+ *
+ * The thresholds split the signal's range into bands.  Band 0 is below
+ * the lowest threshold, band N is above threshold N - 1, and band
+ * thresholds.length is above them all.  Each update() works out which
+ * band the new value is in with a binary search and reports every
+ * threshold crossed on the way there, in the order they were crossed,
+ * so a jump across several setpoints in one loop still reports each of
+ * them.  An update costs O(log n + k) for k crossings and allocates
+ * nothing; the crossings are read from an EventCursor that is reused
+ * by every update.
+ *
+ * With hysteresis, a threshold only counts as crossed once the value
+ * is 'hysteresis' past it, so a signal sitting on a threshold doesn't
+ * chatter back and forth across it.  A value exactly on a threshold
+ * counts as above it, whichever way it got there.
+ *
+ * Unlike LatchDouble, one ThresholdSet keeps one previous value for all
+ * of its thresholds, so every band is checked from the same update.
+ */
+public class ThresholdSet
+{
+	private double[] thresholds;
+	private double hysteresis;
+	private int band;
+	private boolean initialized;
+	private EventCursor cursor;
+
+	/**
+	 * Creates a ThresholdSet with no hysteresis.
+	 * @param thresholds The thresholds, in any order.
+	 */
+	public ThresholdSet(double[] thresholds)
+	{
+		this(thresholds, 0.0);
+	}
+
+	/**
+	 * Creates a ThresholdSet.
+	 * @param thresholds The thresholds, in any order.
+	 * @param hysteresis How far past a threshold the value has to go to
+	 * cross it.
+	 */
+	public ThresholdSet(double[] thresholds, double hysteresis)
+	{
+		this.thresholds = thresholds.clone();
+		Arrays.sort(this.thresholds);
+		this.hysteresis = hysteresis > 0 ? hysteresis : 0.0;
+		this.cursor = new EventCursor();
+		reset();
+	}
+
+	/**
+	 * Forgets the last value.  The next update() sets the starting band
+	 * and reports nothing.
+	 */
+	public void reset()
+	{
+		band = 0;
+		initialized = false;
+		cursor.clear();
+	}
+
+	/**
+	 * Moves to a new value and finds every threshold crossed since the
+	 * last update.  The first update only sets the starting band.
+	 * @param value The new value of the signal.
+	 * @return The cursor over this update's crossings.  It is reused by
+	 * the next update.
+	 */
+	public EventCursor update(double value)
+	{
+		cursor.clear();
+		if(!initialized)
+		{
+			band = countBelow(value);
+			initialized = true;
+			return cursor;
+		}
+
+		//Thresholds at or below value - hysteresis have been passed going up.
+		int upper = countBelow(value - hysteresis);
+		if(upper > band)
+		{
+			cursor.set(band, upper, true);
+			band = upper;
+			return cursor;
+		}
+
+		//Thresholds above value + hysteresis have been passed going down.
+		//A value sitting exactly on a threshold stays above it, so with no
+		//hysteresis it doesn't cross back and forth on every update.
+		int lower = countBelow(value + hysteresis);
+		if(lower < band)
+		{
+			cursor.set(band - 1, lower - 1, false);
+			band = lower;
+		}
+		return cursor;
+	}
+
+	/**
+	 * @return The band the value is in, from 0 to getThresholdCount().
+	 */
+	public int getBand()
+	{
+		return band;
+	}
+
+	/**
+	 * @return The number of thresholds.
+	 */
+	public int getThresholdCount()
+	{
+		return thresholds.length;
+	}
+
+	/**
+	 * @param index A threshold's index, in sorted order.
+	 * @return The threshold.
+	 */
+	public double getThreshold(int index)
+	{
+		return thresholds[index];
+	}
+
+	public double getHysteresis()
+	{
+		return hysteresis;
+	}
+
+	//Number of thresholds at or below 'value'.
+	private int countBelow(double value)
+	{
+		int low = 0;
+		int high = thresholds.length;
+		while(low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if(thresholds[mid] <= value)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * The thresholds crossed by one update(), read one at a time:
+	 * <pre>
+	 * EventCursor events = set.update(height);
+	 * while(events.next())
+	 * {
+	 *     ...events.getIndex(), events.isRising()...
+	 * }
+	 * </pre>
+	 */
+	public class EventCursor
+	{
+		private int next;
+		private int end;
+		private int step;
+		private int index;
+		private int count;
+
+		private EventCursor()
+		{
+			clear();
+		}
+
+		private void clear()
+		{
+			next = 0;
+			end = 0;
+			step = 1;
+			index = -1;
+			count = 0;
+		}
+
+		//Crossings from 'first' up to, but not including, 'stop'.
+		private void set(int first, int stop, boolean rising)
+		{
+			next = first;
+			end = stop;
+			step = rising ? 1 : -1;
+			index = -1;
+			count = Math.abs(stop - first);
+		}
+
+		/**
+		 * Moves to the next crossing.
+		 * @return False if there are no more.
+		 */
+		public boolean next()
+		{
+			if(next == end)
+			{
+				return false;
+			}
+			index = next;
+			next += step;
+			return true;
+		}
+
+		/**
+		 * @return The number of crossings in this update.
+		 */
+		public int getCount()
+		{
+			return count;
+		}
+
+		/**
+		 * @return The index of the threshold crossed, in sorted order.
+		 */
+		public int getIndex()
+		{
+			return index;
+		}
+
+		/**
+		 * @return The threshold crossed.
+		 */
+		public double getThreshold()
+		{
+			return thresholds[index];
+		}
+
+		/**
+		 * @return True if it was crossed going up, false going down.
+		 */
+		public boolean isRising()
+		{
+			return step > 0;
+		}
+
+		/**
+		 * @return The band entered by this crossing.
+		 */
+		public int getEnteredBand()
+		{
+			return step > 0 ? index + 1 : index;
+		}
+
+		/**
+		 * @return The band left by this crossing.
+		 */
+		public int getExitedBand()
+		{
+			return step > 0 ? index : index + 1;
+		}
+	}
+}
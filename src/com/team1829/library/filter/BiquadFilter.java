@@ -0,0 +1,98 @@
+package com.team1829.library.filter;
+
+/**
+ * Second-order IIR filter (biquad), run in transposed direct form II.
+ * The static methods build the common low-pass and notch shapes from
+ * the Audio EQ Cookbook formulas; any other coefficients can be passed
+ * straight to the constructor.
+ */
+public class BiquadFilter implements SampleFilter
+{
+	/**
+	 * Q for a maximally flat (Butterworth) response.
+	 */
+	public static final double BUTTERWORTH_Q = 0.7071067811865476;
+	
+	private double b0, b1, b2, a1, a2;
+	private double z1, z2;
+	private boolean primed;
+	
+	/**
+	 * Coefficients are for y = b0*x + b1*x1 + b2*x2 - a1*y1 - a2*y2,
+	 * already divided through by a0.
+	 */
+	public BiquadFilter(double b0, double b1, double b2, double a1, double a2)
+	{
+		this.b0 = b0;
+		this.b1 = b1;
+		this.b2 = b2;
+		this.a1 = a1;
+		this.a2 = a2;
+		reset();
+	}
+	
+	/**
+	 * @param cutoffHz The -3dB frequency.
+	 * @param sampleRateHz How often samples are fed in.
+	 * @param q The sharpness of the corner; BUTTERWORTH_Q for no peak.
+	 * @return A second-order low-pass filter.
+	 */
+	public static BiquadFilter lowPass(double cutoffHz, double sampleRateHz, double q)
+	{
+		double w0 = 2.0 * Math.PI * cutoffHz / sampleRateHz;
+		double cos = Math.cos(w0);
+		double alpha = Math.sin(w0) / (2.0 * q);
+		double a0 = 1.0 + alpha;
+		return new BiquadFilter((1.0 - cos) / 2.0 / a0, (1.0 - cos) / a0, (1.0 - cos) / 2.0 / a0,
+				-2.0 * cos / a0, (1.0 - alpha) / a0);
+	}
+	
+	/**
+	 * @param cutoffHz The -3dB frequency.
+	 * @param sampleRateHz How often samples are fed in.
+	 * @return A Butterworth low-pass filter.
+	 */
+	public static BiquadFilter lowPass(double cutoffHz, double sampleRateHz)
+	{
+		return lowPass(cutoffHz, sampleRateHz, BUTTERWORTH_Q);
+	}
+	
+	/**
+	 * @param centerHz The frequency to remove.
+	 * @param sampleRateHz How often samples are fed in.
+	 * @param q The narrowness of the notch.
+	 * @return A notch filter, for example to remove motor noise.
+	 */
+	public static BiquadFilter notch(double centerHz, double sampleRateHz, double q)
+	{
+		double w0 = 2.0 * Math.PI * centerHz / sampleRateHz;
+		double cos = Math.cos(w0);
+		double alpha = Math.sin(w0) / (2.0 * q);
+		double a0 = 1.0 + alpha;
+		return new BiquadFilter(1.0 / a0, -2.0 * cos / a0, 1.0 / a0, -2.0 * cos / a0, (1.0 - alpha) / a0);
+	}
+	
+	public double filter(double sample)
+	{
+		if(!primed)
+		{
+			//Settle the state as if this sample had always been there.
+			double gain = (b0 + b1 + b2) / (1.0 + a1 + a2);
+			double y = sample * gain;
+			z2 = b2 * sample - a2 * y;
+			z1 = b1 * sample - a1 * y + z2;
+			primed = true;
+		}
+		double out = b0 * sample + z1;
+		z1 = b1 * sample - a1 * out + z2;
+		z2 = b2 * sample - a2 * out;
+		return out;
+	}
+	
+	public void reset()
+	{
+		z1 = 0.0;
+		z2 = 0.0;
+		primed = false;
+	}
+}
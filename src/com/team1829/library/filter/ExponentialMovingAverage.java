@@ -0,0 +1,86 @@
+package com.team1829.library.filter;
+
+/**
+ * Exponential moving average, which is also a first-order low-pass
+ * filter.  Each output moves 'alpha' of the way from the last output
+ * to the new sample, so smaller alphas smooth more and lag more.
+ */
+public class ExponentialMovingAverage implements SampleFilter
+{
+	private double alpha;
+	private double value;
+	private boolean primed;
+	
+	/**
+	 * @param alpha How far each output moves toward the new sample,
+	 * from 0 (never moves) to 1 (no smoothing).
+	 */
+	public ExponentialMovingAverage(double alpha)
+	{
+		setAlpha(alpha);
+		reset();
+	}
+	
+	/**
+	 * Makes the equivalent of a first-order RC low-pass filter.
+	 * @param cutoffHz The -3dB frequency of the filter.
+	 * @param sampleRateHz How often samples are fed in.
+	 * @return The filter.
+	 */
+	public static ExponentialMovingAverage lowPass(double cutoffHz, double sampleRateHz)
+	{
+		double rc = 1.0 / (2.0 * Math.PI * cutoffHz);
+		double dt = 1.0 / sampleRateHz;
+		return new ExponentialMovingAverage(dt / (rc + dt));
+	}
+	
+	/**
+	 * Makes a filter that behaves like a moving average over 'samples'
+	 * samples, i.e. with alpha = 2 / (samples + 1).
+	 * @param samples The equivalent moving average window.
+	 * @return The filter.
+	 */
+	public static ExponentialMovingAverage ofWindow(int samples)
+	{
+		return new ExponentialMovingAverage(2.0 / (Math.max(samples, 1) + 1.0));
+	}
+	
+	public double filter(double sample)
+	{
+		if(!primed)
+		{
+			//Start at the first sample rather than ramping up from 0.
+			value = sample;
+			primed = true;
+		}
+		else
+		{
+			value += alpha * (sample - value);
+		}
+		return value;
+	}
+	
+	public void reset()
+	{
+		value = 0.0;
+		primed = false;
+	}
+	
+	public void setAlpha(double alpha)
+	{
+		if(alpha < 0.0)
+		{
+			alpha = 0.0;
+		}
+		if(alpha > 1.0)
+		{
+			alpha = 1.0;
+		}
+		this.alpha = alpha;
+	}
+	
+	public double getAlpha()
+	{
+		return alpha;
+	}
+}
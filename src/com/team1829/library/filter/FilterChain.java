@@ -0,0 +1,54 @@
+package com.team1829.library.filter;
+
+/**
+ * Runs a sample through several filters in order, the output of each
+ * one feeding the next.  For example, a HampelFilter to throw out
+ * spikes, then a MedianFilter, then an ExponentialMovingAverage.
+ */
+public class FilterChain implements SampleFilter
+{
+	private SampleFilter[] filters;
+	
+	/**
+	 * @param filters The filters to run, first to last.
+	 */
+	public FilterChain(SampleFilter... filters)
+	{
+		this.filters = new SampleFilter[filters.length];
+		System.arraycopy(filters, 0, this.filters, 0, filters.length);
+	}
+	
+	public double filter(double sample)
+	{
+		for(int i = 0; i < filters.length; i++)
+		{
+			sample = filters[i].filter(sample);
+		}
+		return sample;
+	}
+	
+	public void reset()
+	{
+		for(int i = 0; i < filters.length; i++)
+		{
+			filters[i].reset();
+		}
+	}
+	
+	/**
+	 * @return The number of filters in the chain.
+	 */
+	public int size()
+	{
+		return filters.length;
+	}
+	
+	/**
+	 * @param index The position of the filter, starting at 0.
+	 * @return The filter at that position.
+	 */
+	public SampleFilter get(int index)
+	{
+		return filters[index];
+	}
+}
@@ -0,0 +1,75 @@
+package com.team1829.library.filter;
+
+/**
+ * Spike rejection in the style of a Hampel filter.  A sample that lies
+ * further than 'threshold' scaled deviations from the median of recent
+ * samples is treated as an outlier and replaced with that median;
+ * everything else passes through untouched.
+ *
+ * A true Hampel filter takes a second median of the deviations, which
+ * would cost another sorted window per sample.  Here the scale is an
+ * exponentially weighted average of the absolute deviations instead,
+ * so each sample costs one median update plus a few multiplies.
+ *
+ * Only samples that pass the test feed that average, so a burst of
+ * spikes can't widen the band for the spikes after it.  That also means
+ * the band can only open up from the floor set by minDeviation, which
+ * is why it has to be above 0.
+ */
+public class HampelFilter implements SampleFilter
+{
+	/**
+	 * Converts a mean absolute deviation into a standard deviation for
+	 * normally distributed noise.
+	 */
+	private static final double MAD_SCALE = 1.2533;
+	
+	private MedianFilter median;
+	private double threshold;
+	private double deviationAlpha;
+	private double deviation;
+	private double minDeviation;
+	
+	/**
+	 * @param windowSize How many recent samples to take the median of.
+	 * @param threshold How many deviations away counts as a spike, 3 is
+	 * typical.
+	 * @param minDeviation The smallest deviation to assume, so a perfectly
+	 * steady signal doesn't make every small change look like a spike.
+	 * Must be above 0; about one ADC step is a good start.
+	 */
+	public HampelFilter(int windowSize, double threshold, double minDeviation)
+	{
+		if(!(minDeviation > 0))
+		{
+			throw new IllegalArgumentException("HampelFilter minDeviation must be above 0, not " + minDeviation + "!");
+		}
+		median = new MedianFilter(windowSize);
+		this.threshold = threshold;
+		this.minDeviation = minDeviation;
+		deviationAlpha = 2.0 / (Math.max(windowSize, 1) + 1.0);
+		reset();
+	}
+	
+	public double filter(double sample)
+	{
+		double center = median.filter(sample);
+		double error = Math.abs(sample - center);
+		double scale = Math.max(deviation * MAD_SCALE, minDeviation);
+		boolean outlier = error > threshold * scale;
+		
+		//Only inliers move the band, or one spike would hide the next.
+		if(outlier)
+		{
+			return center;
+		}
+		deviation += deviationAlpha * (error - deviation);
+		return sample;
+	}
+	
+	public void reset()
+	{
+		median.reset();
+		deviation = 0.0;
+	}
+}
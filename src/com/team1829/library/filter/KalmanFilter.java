@@ -0,0 +1,64 @@
+package com.team1829.library.filter;
+
+/**
+ * One-dimensional Kalman filter for a value that is expected to hold
+ * roughly steady between samples.  It weighs each new sample against
+ * its current estimate according to how noisy the sensor is compared
+ * to how fast the real value wanders.
+ */
+public class KalmanFilter implements SampleFilter
+{
+	private double processNoise;
+	private double measurementNoise;
+	private double estimate;
+	private double errorCovariance;
+	private boolean primed;
+	
+	/**
+	 * @param processNoise How much the true value is expected to change
+	 * between samples (variance).  Larger follows changes faster.
+	 * @param measurementNoise How noisy the sensor is (variance).  Larger
+	 * smooths more.
+	 */
+	public KalmanFilter(double processNoise, double measurementNoise)
+	{
+		this.processNoise = processNoise;
+		this.measurementNoise = measurementNoise;
+		reset();
+	}
+	
+	public double filter(double sample)
+	{
+		if(!primed)
+		{
+			estimate = sample;
+			errorCovariance = measurementNoise;
+			primed = true;
+			return estimate;
+		}
+		
+		//Predict: the value holds, but we're less sure of it.
+		errorCovariance += processNoise;
+		
+		//Update: move toward the sample by the Kalman gain.
+		double gain = errorCovariance / (errorCovariance + measurementNoise);
+		estimate += gain * (sample - estimate);
+		errorCovariance *= (1.0 - gain);
+		return estimate;
+	}
+	
+	public void reset()
+	{
+		estimate = 0.0;
+		errorCovariance = 0.0;
+		primed = false;
+	}
+	
+	/**
+	 * @return How uncertain the current estimate is (variance).
+	 */
+	public double getErrorCovariance()
+	{
+		return errorCovariance;
+	}
+}
@@ -0,0 +1,103 @@
+package com.team1829.library.filter;
+
+/**
+ * Median of the last N samples.  Works like RollingMedian, keeping the
+ * window sorted as samples arrive with a binary search and a single
+ * arraycopy per sample, but on doubles.  Until the window has filled,
+ * the median is taken over the samples seen so far.
+ */
+public class MedianFilter implements SampleFilter
+{
+	private double[] window;
+	private double[] sorted;
+	private int index;
+	private int count;
+	
+	/**
+	 * @param size The number of samples to take the median of.
+	 */
+	public MedianFilter(int size)
+	{
+		window = new double[Math.max(size, 1)];
+		sorted = new double[window.length];
+		reset();
+	}
+	
+	public double filter(double sample)
+	{
+		if(count < window.length)
+		{
+			insert(sample, count);
+			count++;
+		}
+		else
+		{
+			remove(window[index]);
+			insert(sample, count - 1);
+		}
+		window[index] = sample;
+		index = (index + 1) % window.length;
+		return sorted[count / 2];
+	}
+	
+	/**
+	 * @return The current median, without adding a sample.
+	 */
+	public double getMedian()
+	{
+		return count == 0 ? 0.0 : sorted[count / 2];
+	}
+	
+	public void reset()
+	{
+		index = 0;
+		count = 0;
+	}
+	
+	//Removes one occurrence of value from sorted[0, count).
+	private void remove(double value)
+	{
+		int low = 0;
+		int high = count - 1;
+		int found = 0;
+		while(low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			if(sorted[mid] < value)
+			{
+				low = mid + 1;
+			}
+			else if(sorted[mid] > value)
+			{
+				high = mid - 1;
+			}
+			else
+			{
+				found = mid;
+				break;
+			}
+		}
+		System.arraycopy(sorted, found + 1, sorted, found, count - 1 - found);
+	}
+	
+	//Inserts value into sorted[0, length) keeping it in order.
+	private void insert(double value, int length)
+	{
+		int low = 0;
+		int high = length;
+		while(low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if(sorted[mid] <= value)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		System.arraycopy(sorted, low, sorted, low + 1, length - low);
+		sorted[low] = value;
+	}
+}
@@ -0,0 +1,62 @@
+package com.team1829.library.filter;
+
+/**
+ * Moving average over the last N samples, kept as a running sum.
+ * Floating point sums slowly drift from the true total, so the sum is
+ * recomputed from the window once every time the window wraps, which
+ * keeps the average cost per sample constant.
+ */
+public class MovingAverageFilter implements SampleFilter
+{
+	private double[] window;
+	private int index;
+	private int count;
+	private double sum;
+	
+	/**
+	 * @param size The number of samples to average.
+	 */
+	public MovingAverageFilter(int size)
+	{
+		window = new double[Math.max(size, 1)];
+		reset();
+	}
+	
+	public double filter(double sample)
+	{
+		sum += sample - window[index];
+		window[index] = sample;
+		index++;
+		if(index == window.length)
+		{
+			index = 0;
+			resync();
+		}
+		if(count < window.length)
+		{
+			count++;
+		}
+		return sum / count;
+	}
+	
+	public void reset()
+	{
+		for(int i = 0; i < window.length; i++)
+		{
+			window[i] = 0.0;
+		}
+		index = 0;
+		count = 0;
+		sum = 0.0;
+	}
+	
+	private void resync()
+	{
+		double total = 0.0;
+		for(int i = 0; i < window.length; i++)
+		{
+			total += window[i];
+		}
+		sum = total;
+	}
+}
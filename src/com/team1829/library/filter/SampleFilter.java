@@ -0,0 +1,22 @@
+package com.team1829.library.filter;
+
+/**
+ * A filter that takes one sample at a time and returns the filtered
+ * value.  Filters keep whatever history they need in primitive fields
+ * set up when they are made, so filtering a sample never allocates.
+ * Filters can be strung together with a FilterChain.
+ */
+public interface SampleFilter
+{
+	/**
+	 * Feeds the next sample through the filter.
+	 * @param sample The new raw sample.
+	 * @return The filtered value.
+	 */
+	public double filter(double sample);
+	
+	/**
+	 * Forgets all history, as if no samples had been seen.
+	 */
+	public void reset();
+}
@@ -0,0 +1,18 @@
+package com.team1829.library.hal;
+
+/**
+ * Anything that produces raw analog readings, such as an AnalogInput
+ * or a simulated sensor.
+ */
+public interface AnalogSource
+{
+	/**
+	 * @return The raw reading from the converter.
+	 */
+	public int getValue();
+	
+	/**
+	 * @return The reading scaled to volts.
+	 */
+	public double getVoltage();
+}
@@ -0,0 +1,14 @@
+package com.team1829.library.hal;
+
+/**
+ * Source of monotonic time.  On the robot this is System.nanoTime(),
+ * while a simulation can step it by hand.
+ */
+public interface Clock
+{
+	/**
+	 * @return The current time in nanoseconds.  Only differences between
+	 * two readings are meaningful.
+	 */
+	public long nanoTime();
+}
@@ -0,0 +1,13 @@
+package com.team1829.library.hal;
+
+/**
+ * Anything that produces an on/off reading, such as a DigitalInput
+ * or a simulated limit switch.
+ */
+public interface DigitalSource
+{
+	/**
+	 * @return The current state of the input.
+	 */
+	public boolean get();
+}
@@ -0,0 +1,40 @@
+package com.team1829.library.hal;
+
+/**
+ * Holds the HardwareFactory the library uses whenever a device is made
+ * from a channel number.  Defaults to WPILibHardware; call setFactory()
+ * with a SimulatedHardware before making any devices to run without a
+ * robot.
+ */
+public class Hardware
+{
+	private static HardwareFactory factory;
+	
+	/**
+	 * @return The factory in use, WPILibHardware unless one has been set.
+	 */
+	public static synchronized HardwareFactory getFactory()
+	{
+		if(factory == null)
+		{
+			factory = new WPILibHardware();
+		}
+		return factory;
+	}
+	
+	/**
+	 * @param newFactory The factory to make devices with from now on.
+	 */
+	public static synchronized void setFactory(HardwareFactory newFactory)
+	{
+		factory = newFactory;
+	}
+	
+	/**
+	 * @return The clock of the factory in use.
+	 */
+	public static Clock getClock()
+	{
+		return getFactory().getClock();
+	}
+}
@@ -0,0 +1,45 @@
+package com.team1829.library.hal;
+
+/**
+ * Creates the hardware objects the library talks to.  The robot uses
+ * WPILibHardware, while SimulatedHardware lets the library run on any
+ * computer with no robot attached.
+ */
+public interface HardwareFactory
+{
+	/**
+	 * @param channel The PWM channel of the motor controller.
+	 * @return A motor output on that channel.
+	 */
+	public MotorOutput getMotorOutput(int channel);
+	
+	/**
+	 * @param channel The analog input channel.
+	 * @return An analog source on that channel.
+	 */
+	public AnalogSource getAnalogSource(int channel);
+	
+	/**
+	 * @param channel The DIO channel.
+	 * @return A digital source on that channel.
+	 */
+	public DigitalSource getDigitalSource(int channel);
+	
+	/**
+	 * @param module The solenoid module number.
+	 * @param channel The channel on the module.
+	 * @return A solenoid output on that channel.
+	 */
+	public SolenoidOutput getSolenoidOutput(int module, int channel);
+	
+	/**
+	 * @param port The USB port of the device.
+	 * @return The device on that port.
+	 */
+	public HidSource getHidSource(int port);
+	
+	/**
+	 * @return The clock that goes with this hardware.
+	 */
+	public Clock getClock();
+}
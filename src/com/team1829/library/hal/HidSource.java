@@ -0,0 +1,20 @@
+package com.team1829.library.hal;
+
+/**
+ * A human interface device on one USB port, such as a Joystick or a
+ * simulated gamepad.
+ */
+public interface HidSource
+{
+	/**
+	 * @param button The button ID, starting at 1.
+	 * @return True if the button is held.
+	 */
+	public boolean getRawButton(int button);
+	
+	/**
+	 * @param axis The axis ID, starting at 0.
+	 * @return The axis position, from -1.0 to 1.0.
+	 */
+	public double getRawAxis(int axis);
+}
@@ -0,0 +1,18 @@
+package com.team1829.library.hal;
+
+/**
+ * Anything that accepts a motor power, such as a Talon or a simulated
+ * motor.
+ */
+public interface MotorOutput
+{
+	/**
+	 * @param power The power to output, from -1.0 to 1.0.
+	 */
+	public void set(double power);
+	
+	/**
+	 * @return The power most recently output.
+	 */
+	public double get();
+}
@@ -0,0 +1,42 @@
+package com.team1829.library.hal;
+
+/**
+ * Simulated analog sensor whose reading is set by the simulation.
+ */
+public class SimAnalogSource implements AnalogSource
+{
+	/**
+	 * Full-scale voltage of the roboRIO's analog inputs.
+	 */
+	public static final double FULL_SCALE_VOLTAGE = 5.0;
+	
+	/**
+	 * Largest raw reading of the roboRIO's 12-bit converter.
+	 */
+	public static final int FULL_SCALE_VALUE = 4095;
+	
+	private int value;
+	
+	public SimAnalogSource()
+	{
+		value = 0;
+	}
+	
+	public int getValue()
+	{
+		return value;
+	}
+	
+	public double getVoltage()
+	{
+		return value * FULL_SCALE_VOLTAGE / FULL_SCALE_VALUE;
+	}
+	
+	/**
+	 * @param value The raw reading the sensor will return.
+	 */
+	public void setValue(int value)
+	{
+		this.value = value;
+	}
+}
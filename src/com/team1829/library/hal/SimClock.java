@@ -0,0 +1,36 @@
+package com.team1829.library.hal;
+
+/**
+ * Clock that only moves when told to, so a simulation runs exactly the
+ * same way every time and as fast as the CPU allows.
+ */
+public class SimClock implements Clock
+{
+	private long now;
+	
+	public SimClock()
+	{
+		now = 0;
+	}
+	
+	public long nanoTime()
+	{
+		return now;
+	}
+	
+	/**
+	 * @param nanos How far to move the clock forward, in nanoseconds.
+	 */
+	public void advance(long nanos)
+	{
+		now += nanos;
+	}
+	
+	/**
+	 * @param nanos The new time, in nanoseconds.
+	 */
+	public void setTime(long nanos)
+	{
+		now = nanos;
+	}
+}
@@ -0,0 +1,27 @@
+package com.team1829.library.hal;
+
+/**
+ * Simulated digital input whose state is set by the simulation.
+ */
+public class SimDigitalSource implements DigitalSource
+{
+	private boolean state;
+	
+	public SimDigitalSource()
+	{
+		state = false;
+	}
+	
+	public boolean get()
+	{
+		return state;
+	}
+	
+	/**
+	 * @param state The state the input will return.
+	 */
+	public void set(boolean state)
+	{
+		this.state = state;
+	}
+}
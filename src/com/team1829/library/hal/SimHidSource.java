@@ -0,0 +1,63 @@
+package com.team1829.library.hal;
+
+/**
+ * Simulated controller whose buttons and axes are set by the
+ * simulation.  Reads of IDs outside the arrays return released and
+ * centered, like an unplugged Joystick.
+ */
+public class SimHidSource implements HidSource
+{
+	public static final int BUTTON_COUNT = 32;
+	public static final int AXIS_COUNT = 12;
+	
+	private boolean[] buttons;
+	private double[] axes;
+	
+	public SimHidSource()
+	{
+		buttons = new boolean[BUTTON_COUNT + 1];
+		axes = new double[AXIS_COUNT];
+	}
+	
+	public boolean getRawButton(int button)
+	{
+		if(button < 0 || button >= buttons.length)
+		{
+			return false;
+		}
+		return buttons[button];
+	}
+	
+	public double getRawAxis(int axis)
+	{
+		if(axis < 0 || axis >= axes.length)
+		{
+			return 0.0;
+		}
+		return axes[axis];
+	}
+	
+	/**
+	 * @param button The button ID, starting at 1.
+	 * @param pressed Whether the button is held.
+	 */
+	public void setButton(int button, boolean pressed)
+	{
+		if(button >= 0 && button < buttons.length)
+		{
+			buttons[button] = pressed;
+		}
+	}
+	
+	/**
+	 * @param axis The axis ID, starting at 0.
+	 * @param value The axis position.
+	 */
+	public void setAxis(int axis, double value)
+	{
+		if(axis >= 0 && axis < axes.length)
+		{
+			axes[axis] = value;
+		}
+	}
+}
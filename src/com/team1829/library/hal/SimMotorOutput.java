@@ -0,0 +1,36 @@
+package com.team1829.library.hal;
+
+/**
+ * Simulated motor controller that remembers what it was told and how
+ * many times.
+ */
+public class SimMotorOutput implements MotorOutput
+{
+	private double power;
+	private long writeCount;
+	
+	public SimMotorOutput()
+	{
+		power = 0.0;
+		writeCount = 0;
+	}
+	
+	public void set(double power)
+	{
+		this.power = power;
+		writeCount++;
+	}
+	
+	public double get()
+	{
+		return power;
+	}
+	
+	/**
+	 * @return The number of times set() has been called.
+	 */
+	public long getWriteCount()
+	{
+		return writeCount;
+	}
+}
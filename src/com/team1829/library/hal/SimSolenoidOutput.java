@@ -0,0 +1,36 @@
+package com.team1829.library.hal;
+
+/**
+ * Simulated solenoid that remembers its state and how many times it
+ * was written.
+ */
+public class SimSolenoidOutput implements SolenoidOutput
+{
+	private boolean on;
+	private long writeCount;
+	
+	public SimSolenoidOutput()
+	{
+		on = false;
+		writeCount = 0;
+	}
+	
+	public void set(boolean on)
+	{
+		this.on = on;
+		writeCount++;
+	}
+	
+	public boolean get()
+	{
+		return on;
+	}
+	
+	/**
+	 * @return The number of times set() has been called.
+	 */
+	public long getWriteCount()
+	{
+		return writeCount;
+	}
+}
@@ -0,0 +1,93 @@
+package com.team1829.library.hal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HardwareFactory that hands out simulated devices, so the library can
+ * run on any computer.  Asking for the same channel twice returns the
+ * same device, which lets the simulation reach in and set inputs or
+ * read outputs.  Time comes from a SimClock that only moves when the
+ * simulation advances it.
+ */
+public class SimulatedHardware implements HardwareFactory
+{
+	private SimClock clock;
+	private Map<Integer, SimMotorOutput> motors;
+	private Map<Integer, SimAnalogSource> analogs;
+	private Map<Integer, SimDigitalSource> digitals;
+	private Map<Integer, SimSolenoidOutput> solenoids;
+	private Map<Integer, SimHidSource> hids;
+	
+	public SimulatedHardware()
+	{
+		clock = new SimClock();
+		motors = new HashMap<Integer, SimMotorOutput>();
+		analogs = new HashMap<Integer, SimAnalogSource>();
+		digitals = new HashMap<Integer, SimDigitalSource>();
+		solenoids = new HashMap<Integer, SimSolenoidOutput>();
+		hids = new HashMap<Integer, SimHidSource>();
+	}
+	
+	public synchronized SimMotorOutput getMotorOutput(int channel)
+	{
+		SimMotorOutput motor = motors.get(channel);
+		if(motor == null)
+		{
+			motor = new SimMotorOutput();
+			motors.put(channel, motor);
+		}
+		return motor;
+	}
+	
+	public synchronized SimAnalogSource getAnalogSource(int channel)
+	{
+		SimAnalogSource analog = analogs.get(channel);
+		if(analog == null)
+		{
+			analog = new SimAnalogSource();
+			analogs.put(channel, analog);
+		}
+		return analog;
+	}
+	
+	public synchronized SimDigitalSource getDigitalSource(int channel)
+	{
+		SimDigitalSource digital = digitals.get(channel);
+		if(digital == null)
+		{
+			digital = new SimDigitalSource();
+			digitals.put(channel, digital);
+		}
+		return digital;
+	}
+	
+	public synchronized SimSolenoidOutput getSolenoidOutput(int module, int channel)
+	{
+		//Modules hold 8 channels each.
+		int key = module * 8 + channel;
+		SimSolenoidOutput solenoid = solenoids.get(key);
+		if(solenoid == null)
+		{
+			solenoid = new SimSolenoidOutput();
+			solenoids.put(key, solenoid);
+		}
+		return solenoid;
+	}
+	
+	public synchronized SimHidSource getHidSource(int port)
+	{
+		SimHidSource hid = hids.get(port);
+		if(hid == null)
+		{
+			hid = new SimHidSource();
+			hids.put(port, hid);
+		}
+		return hid;
+	}
+	
+	public SimClock getClock()
+	{
+		return clock;
+	}
+}
@@ -0,0 +1,18 @@
+package com.team1829.library.hal;
+
+/**
+ * Anything that can be switched on or off, such as a Solenoid or a
+ * simulated valve.
+ */
+public interface SolenoidOutput
+{
+	/**
+	 * @param on True to turn the output on.
+	 */
+	public void set(boolean on);
+	
+	/**
+	 * @return The current state of the output.
+	 */
+	public boolean get();
+}
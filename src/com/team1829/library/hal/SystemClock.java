@@ -0,0 +1,18 @@
+package com.team1829.library.hal;
+
+/**
+ * Clock backed by System.nanoTime().
+ */
+public class SystemClock implements Clock
+{
+	public static final SystemClock INSTANCE = new SystemClock();
+	
+	private SystemClock()
+	{
+	}
+	
+	public long nanoTime()
+	{
+		return System.nanoTime();
+	}
+}
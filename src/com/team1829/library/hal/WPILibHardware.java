@@ -0,0 +1,112 @@
+package com.team1829.library.hal;
+
+import edu.wpi.first.wpilibj.AnalogInput;
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.Joystick;
+import edu.wpi.first.wpilibj.Solenoid;
+import edu.wpi.first.wpilibj.SpeedController;
+import edu.wpi.first.wpilibj.Talon;
+
+/**
+ * HardwareFactory that hands out real WPILib devices.  This is the only
+ * place outside of the classes that extend WPILib types that touches
+ * WPILib, so nothing else needs WPILib's native libraries to load.
+ */
+public class WPILibHardware implements HardwareFactory
+{
+	public MotorOutput getMotorOutput(int channel)
+	{
+		return new SpeedControllerOutput(new Talon(channel));
+	}
+	
+	public AnalogSource getAnalogSource(final int channel)
+	{
+		final AnalogInput analog = new AnalogInput(channel);
+		return new AnalogSource()
+		{
+			public int getValue()
+			{
+				return analog.getValue();
+			}
+			
+			public double getVoltage()
+			{
+				return analog.getVoltage();
+			}
+		};
+	}
+	
+	public DigitalSource getDigitalSource(int channel)
+	{
+		final DigitalInput digital = new DigitalInput(channel);
+		return new DigitalSource()
+		{
+			public boolean get()
+			{
+				return digital.get();
+			}
+		};
+	}
+	
+	public SolenoidOutput getSolenoidOutput(int module, int channel)
+	{
+		final Solenoid solenoid = new Solenoid(module, channel);
+		return new SolenoidOutput()
+		{
+			public void set(boolean on)
+			{
+				solenoid.set(on);
+			}
+			
+			public boolean get()
+			{
+				return solenoid.get();
+			}
+		};
+	}
+	
+	public HidSource getHidSource(int port)
+	{
+		final Joystick joystick = new Joystick(port);
+		return new HidSource()
+		{
+			public boolean getRawButton(int button)
+			{
+				return joystick.getRawButton(button);
+			}
+			
+			public double getRawAxis(int axis)
+			{
+				return joystick.getRawAxis(axis);
+			}
+		};
+	}
+	
+	public Clock getClock()
+	{
+		return SystemClock.INSTANCE;
+	}
+	
+	/**
+	 * Adapts any WPILib SpeedController to a MotorOutput.
+	 */
+	public static class SpeedControllerOutput implements MotorOutput
+	{
+		private SpeedController controller;
+		
+		public SpeedControllerOutput(SpeedController controller)
+		{
+			this.controller = controller;
+		}
+		
+		public void set(double power)
+		{
+			controller.set(power);
+		}
+		
+		public double get()
+		{
+			return controller.get();
+		}
+	}
+}
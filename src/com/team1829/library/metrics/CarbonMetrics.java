@@ -0,0 +1,185 @@
+package com.team1829.library.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Library-wide registry of counters, gauges, and latency histograms.
+ *
+ * Every Carbon device looks up its metrics here once, when it is made,
+ * and keeps them; after that, recording is a few atomic operations with
+ * no locking, no lookups, and no allocation.  Asking for a name that is
+ * already registered returns the same metric, so devices of the same
+ * kind can share one if they are given the same name.
+ *
+ * At the end of a match, report() prints everything, with p50, p99, and
+ * max for each histogram, and can reset it all for the next match.
+ */
+public class CarbonMetrics
+{
+	private static final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+	private static final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<String, Gauge>();
+	private static final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+
+	/**
+	 * @param name The name of the counter, such as "CarbonTalon 3.writes".
+	 * @return The counter by that name, made if it doesn't exist yet.
+	 */
+	public static Counter counter(String name)
+	{
+		Counter counter = counters.get(name);
+		if(counter == null)
+		{
+			Counter created = new Counter(name);
+			counter = counters.putIfAbsent(name, created);
+			if(counter == null)
+			{
+				counter = created;
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * @param name The name of the gauge.
+	 * @return The gauge by that name, made if it doesn't exist yet.
+	 */
+	public static Gauge gauge(String name)
+	{
+		Gauge gauge = gauges.get(name);
+		if(gauge == null)
+		{
+			Gauge created = new Gauge(name);
+			gauge = gauges.putIfAbsent(name, created);
+			if(gauge == null)
+			{
+				gauge = created;
+			}
+		}
+		return gauge;
+	}
+
+	/**
+	 * @param name The name of the histogram, such as "RampTask.run".
+	 * @return The histogram by that name, made if it doesn't exist yet.
+	 */
+	public static LatencyHistogram histogram(String name)
+	{
+		LatencyHistogram histogram = histograms.get(name);
+		if(histogram == null)
+		{
+			LatencyHistogram created = new LatencyHistogram(name);
+			histogram = histograms.putIfAbsent(name, created);
+			if(histogram == null)
+			{
+				histogram = created;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * @return The current value of every counter, by name.
+	 */
+	public static Map<String, Long> getCounters()
+	{
+		Map<String, Long> values = new TreeMap<String, Long>();
+		for(Counter counter : counters.values())
+		{
+			values.put(counter.getName(), counter.get());
+		}
+		return values;
+	}
+
+	/**
+	 * @return The current value of every gauge, by name.
+	 */
+	public static Map<String, Double> getGauges()
+	{
+		Map<String, Double> values = new TreeMap<String, Double>();
+		for(Gauge gauge : gauges.values())
+		{
+			values.put(gauge.getName(), gauge.get());
+		}
+		return values;
+	}
+
+	/**
+	 * @param reset Whether to empty each histogram as it is copied.
+	 * @return A snapshot of every histogram, sorted by name.
+	 */
+	public static List<HistogramSnapshot> getHistograms(boolean reset)
+	{
+		Map<String, LatencyHistogram> sorted = new TreeMap<String, LatencyHistogram>(histograms);
+		List<HistogramSnapshot> snapshots = new ArrayList<HistogramSnapshot>();
+		for(LatencyHistogram histogram : sorted.values())
+		{
+			snapshots.add(reset ? histogram.snapshotAndReset() : histogram.snapshot());
+		}
+		return snapshots;
+	}
+
+	/**
+	 * Sets every counter and gauge back to 0 and empties every
+	 * histogram.  The metrics stay registered.
+	 */
+	public static void reset()
+	{
+		for(Counter counter : counters.values())
+		{
+			counter.reset();
+		}
+		for(Gauge gauge : gauges.values())
+		{
+			gauge.reset();
+		}
+		for(LatencyHistogram histogram : histograms.values())
+		{
+			histogram.reset();
+		}
+	}
+
+	/**
+	 * Describes every metric, one per line, sorted by name.
+	 * @param reset Whether to reset everything once it has been read.
+	 * @return The report.
+	 */
+	public static String report(boolean reset)
+	{
+		StringBuilder report = new StringBuilder();
+		//Report what each reset took away, so a count made between reading
+		//a counter and resetting it is never lost.
+		Map<String, Long> counts = reset ? new TreeMap<String, Long>() : getCounters();
+		if(reset)
+		{
+			for(Counter counter : counters.values())
+			{
+				counts.put(counter.getName(), counter.reset());
+			}
+		}
+		for(Map.Entry<String, Long> entry : counts.entrySet())
+		{
+			report.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+		}
+		for(Map.Entry<String, Double> entry : getGauges().entrySet())
+		{
+			report.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+		}
+		for(HistogramSnapshot snapshot : getHistograms(reset))
+		{
+			report.append(snapshot).append('\n');
+		}
+		if(reset)
+		{
+			for(Gauge gauge : gauges.values())
+			{
+				gauge.reset();
+			}
+		}
+		return report.toString();
+	}
+}
@@ -0,0 +1,51 @@
+package com.team1829.library.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A count of events, such as writes to a motor controller.  Safe to
+ * increment from any thread without locking.
+ */
+public class Counter
+{
+	private final String name;
+	private final AtomicLong count;
+
+	public Counter(String name)
+	{
+		this.name = name;
+		this.count = new AtomicLong(0);
+	}
+
+	public void increment()
+	{
+		count.incrementAndGet();
+	}
+
+	/**
+	 * @param amount How much to add to the count.
+	 */
+	public void add(long amount)
+	{
+		count.addAndGet(amount);
+	}
+
+	public long get()
+	{
+		return count.get();
+	}
+
+	/**
+	 * Sets the count back to 0.
+	 * @return The count before it was reset.
+	 */
+	public long reset()
+	{
+		return count.getAndSet(0);
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+}
@@ -0,0 +1,40 @@
+package com.team1829.library.metrics;
+
+/**
+ * A value that is set rather than counted, such as how many motors
+ * were written in the last loop.  The latest value set wins.
+ */
+public class Gauge
+{
+	private final String name;
+	private volatile double value;
+
+	public Gauge(String name)
+	{
+		this.name = name;
+		this.value = 0.0;
+	}
+
+	public void set(double value)
+	{
+		this.value = value;
+	}
+
+	public double get()
+	{
+		return value;
+	}
+
+	/**
+	 * Sets the value back to 0.
+	 */
+	public void reset()
+	{
+		value = 0.0;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+}
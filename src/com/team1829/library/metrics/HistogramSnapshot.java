@@ -0,0 +1,102 @@
+package com.team1829.library.metrics;
+
+/**
+ * A copy of a LatencyHistogram taken at one moment, for working out
+ * percentiles without holding up the threads still recording into it.
+ */
+public class HistogramSnapshot
+{
+	private final String name;
+	private final long[] counts;
+	private final long count;
+	private final long sum;
+	private final long max;
+
+	HistogramSnapshot(String name, long[] counts, long sum, long max)
+	{
+		this.name = name;
+		this.counts = counts;
+		long total = 0;
+		for(int i = 0; i < counts.length; i++)
+		{
+			total += counts[i];
+		}
+		this.count = total;
+		this.sum = sum;
+		this.max = max;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * @return The number of durations recorded.
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * @return The mean duration in nanoseconds, or 0 if there are none.
+	 */
+	public double getMean()
+	{
+		return count == 0 ? 0.0 : (double)sum / count;
+	}
+
+	/**
+	 * @return The longest duration in nanoseconds.
+	 */
+	public long getMax()
+	{
+		return max;
+	}
+
+	/**
+	 * @param percentile From 0 to 100, such as 50 or 99.
+	 * @return A duration in nanoseconds that at least 'percentile'
+	 * percent of the recorded durations are at or below, accurate to
+	 * the width of one bucket.  0 if there are none.
+	 */
+	public long getPercentile(double percentile)
+	{
+		if(count == 0)
+		{
+			return 0;
+		}
+		long rank = (long)Math.ceil(percentile / 100.0 * count);
+		if(rank < 1)
+		{
+			rank = 1;
+		}
+		long seen = 0;
+		for(int i = 0; i < counts.length; i++)
+		{
+			seen += counts[i];
+			if(seen >= rank)
+			{
+				return Math.min(LatencyHistogram.getBucketLimit(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return The count, p50, p99, and max on one line, in microseconds.
+	 */
+	public String toString()
+	{
+		return name + ": count=" + count
+				+ " p50=" + micros(getPercentile(50))
+				+ " p99=" + micros(getPercentile(99))
+				+ " max=" + micros(max) + "us";
+	}
+
+	private static String micros(long nanos)
+	{
+		return String.valueOf(Math.round(nanos / 100.0) / 10.0);
+	}
+}
@@ -0,0 +1,133 @@
+package com.team1829.library.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-memory histogram of durations in nanoseconds.
+ *
+ * Buckets are spaced logarithmically: every power of two is split into
+ * 8 equal buckets, so any value is placed within 12.5% of where it
+ * really is, from 1 nanosecond up to centuries, in 496 buckets.  Values
+ * are counted with atomic increments, so any number of threads can
+ * record at once without locking, and recording never allocates.
+ */
+public class LatencyHistogram
+{
+	/**
+	 * Each power of two is split into 2^SUB_BUCKET_BITS buckets.
+	 */
+	public static final int SUB_BUCKET_BITS = 3;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Total number of buckets.  Values below SUB_BUCKETS get one bucket
+	 * each; every power of two above that gets SUB_BUCKETS.
+	 */
+	public static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final String name;
+	private final AtomicLongArray buckets;
+	private final AtomicLong sum;
+	private final AtomicLong max;
+
+	public LatencyHistogram(String name)
+	{
+		this.name = name;
+		buckets = new AtomicLongArray(BUCKET_COUNT);
+		sum = new AtomicLong(0);
+		max = new AtomicLong(0);
+	}
+
+	/**
+	 * Counts one duration.  Negative durations count as 0.
+	 * @param nanos The duration, in nanoseconds.
+	 */
+	public void record(long nanos)
+	{
+		if(nanos < 0)
+		{
+			nanos = 0;
+		}
+		buckets.incrementAndGet(getBucket(nanos));
+		sum.addAndGet(nanos);
+		long oldMax = max.get();
+		while(nanos > oldMax && !max.compareAndSet(oldMax, nanos))
+		{
+			oldMax = max.get();
+		}
+	}
+
+	/**
+	 * @return A copy of the histogram as it stands.
+	 */
+	public HistogramSnapshot snapshot()
+	{
+		long[] counts = new long[BUCKET_COUNT];
+		for(int i = 0; i < BUCKET_COUNT; i++)
+		{
+			counts[i] = buckets.get(i);
+		}
+		return new HistogramSnapshot(name, counts, sum.get(), max.get());
+	}
+
+	/**
+	 * Copies the histogram and empties it in one pass, so no value is
+	 * lost between the two.
+	 * @return The histogram as it was before it was emptied.
+	 */
+	public HistogramSnapshot snapshotAndReset()
+	{
+		long[] counts = new long[BUCKET_COUNT];
+		for(int i = 0; i < BUCKET_COUNT; i++)
+		{
+			counts[i] = buckets.getAndSet(i, 0);
+		}
+		return new HistogramSnapshot(name, counts, sum.getAndSet(0), max.getAndSet(0));
+	}
+
+	/**
+	 * Empties the histogram.
+	 */
+	public void reset()
+	{
+		snapshotAndReset();
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * @param nanos A duration, 0 or more.
+	 * @return The bucket it is counted in.
+	 */
+	static int getBucket(long nanos)
+	{
+		if(nanos < SUB_BUCKETS)
+		{
+			return (int)nanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int)(nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * @param bucket A bucket number.
+	 * @return The largest duration counted in that bucket.
+	 */
+	static long getBucketLimit(int bucket)
+	{
+		if(bucket < SUB_BUCKETS)
+		{
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		long low = (long)(SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+		return low + width - 1 < 0 ? Long.MAX_VALUE : low + width - 1;
+	}
+}
@@ -0,0 +1,234 @@
+package com.team1829.library.replay;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.team1829.library.CarbonRecorder;
+
+/**
+ * Reads back a log written by the CarbonRecorder, one record at a time.
+ *
+ * The reader is a cursor: next() moves to the following record and the
+ * getters describe it, so walking a whole log allocates nothing past
+ * the segment currently open.  Slots the recorder never filled in (a
+ * zero type) are skipped, as are segments that were never written.
+ */
+public class RecordingReader
+{
+	private File directory;
+	private Map<Integer, String> deviceNames;
+	private List<File> segmentFiles;
+
+	private int segmentIndex;
+	private MappedByteBuffer buffer;
+	private int offset;
+
+	private long timestamp;
+	private int device;
+	private short type;
+	private int channel;
+	private double valueA;
+	private double valueB;
+
+	/**
+	 * Opens the log in 'directory'.
+	 * @param directory A directory a CarbonRecorder wrote to.
+	 * @throws IOException If devices.txt can't be read.
+	 */
+	public RecordingReader(File directory) throws IOException
+	{
+		this.directory = directory;
+		deviceNames = new HashMap<Integer, String>();
+		segmentFiles = new ArrayList<File>();
+
+		BufferedReader devices = new BufferedReader(new FileReader(new File(directory, "devices.txt")));
+		try
+		{
+			String line;
+			while((line = devices.readLine()) != null)
+			{
+				int tab = line.indexOf('\t');
+				if(tab > 0)
+				{
+					deviceNames.put(Integer.parseInt(line.substring(0, tab)), line.substring(tab + 1));
+				}
+			}
+		}
+		finally
+		{
+			devices.close();
+		}
+
+		//Segments the recorder skipped entirely leave gaps in the numbering.
+		long last = -1;
+		String[] names = directory.list();
+		if(names != null)
+		{
+			for(String name : names)
+			{
+				if(name.startsWith("segment-") && name.endsWith(".bin"))
+				{
+					try
+					{
+						last = Math.max(last, Long.parseLong(name.substring(8, name.length() - 4)));
+					}
+					catch(NumberFormatException e)
+					{
+						//Not one of ours.
+					}
+				}
+			}
+		}
+		for(long n = 0; n <= last; n++)
+		{
+			File file = CarbonRecorder.getSegmentFile(directory, n);
+			if(file.isFile())
+			{
+				segmentFiles.add(file);
+			}
+		}
+
+		rewind();
+	}
+
+	/**
+	 * Goes back to before the first record.
+	 */
+	public void rewind()
+	{
+		segmentIndex = -1;
+		buffer = null;
+		offset = 0;
+	}
+
+	/**
+	 * Moves to the next record in the log.
+	 * @return False if there are no more records.
+	 * @throws IOException If a segment can't be read.
+	 */
+	public boolean next() throws IOException
+	{
+		while(true)
+		{
+			if(buffer == null || offset + CarbonRecorder.RECORD_SIZE > buffer.capacity())
+			{
+				if(segmentIndex + 1 >= segmentFiles.size())
+				{
+					buffer = null;
+					return false;
+				}
+				segmentIndex++;
+				buffer = map(segmentFiles.get(segmentIndex));
+				offset = 0;
+				continue;
+			}
+
+			int at = offset;
+			offset += CarbonRecorder.RECORD_SIZE;
+			type = buffer.getShort(at + CarbonRecorder.OFFSET_TYPE);
+			if(type == 0)
+			{
+				continue;
+			}
+			timestamp = buffer.getLong(at + CarbonRecorder.OFFSET_TIMESTAMP);
+			device = buffer.getShort(at + CarbonRecorder.OFFSET_DEVICE) & 0xFFFF;
+			channel = buffer.getInt(at + CarbonRecorder.OFFSET_CHANNEL);
+			valueA = buffer.getDouble(at + CarbonRecorder.OFFSET_VALUE_A);
+			valueB = buffer.getDouble(at + CarbonRecorder.OFFSET_VALUE_B);
+			return true;
+		}
+	}
+
+	/**
+	 * @return When the current record was written, in nanoseconds.
+	 */
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+
+	/**
+	 * @return The device ID of the current record.
+	 */
+	public int getDevice()
+	{
+		return device;
+	}
+
+	/**
+	 * @return One of the CarbonRecorder TYPE_ constants.
+	 */
+	public short getType()
+	{
+		return type;
+	}
+
+	/**
+	 * @return The type-specific channel of the current record.
+	 */
+	public int getChannel()
+	{
+		return channel;
+	}
+
+	public double getValueA()
+	{
+		return valueA;
+	}
+
+	public double getValueB()
+	{
+		return valueB;
+	}
+
+	/**
+	 * @param id A device ID from a record.
+	 * @return The name the device was registered with, or null.
+	 */
+	public String getDeviceName(int id)
+	{
+		return deviceNames.get(id);
+	}
+
+	/**
+	 * @return Every device in the log, by ID.
+	 */
+	public Map<Integer, String> getDeviceNames()
+	{
+		return deviceNames;
+	}
+
+	/**
+	 * @return The directory the log is in.
+	 */
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	private static MappedByteBuffer map(File file) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			mapped.order(ByteOrder.LITTLE_ENDIAN);
+			return mapped;
+		}
+		finally
+		{
+			//The mapping stays valid after the file is closed.
+			raf.close();
+		}
+	}
+}
@@ -0,0 +1,350 @@
+package com.team1829.library.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.team1829.library.CarbonRecorder;
+import com.team1829.library.CarbonScheduler;
+import com.team1829.library.hal.Hardware;
+import com.team1829.library.hal.MotorOutput;
+import com.team1829.library.hal.SimClock;
+import com.team1829.library.hal.SimulatedHardware;
+
+/**
+ * Feeds a CarbonRecorder log back through the library, so a match can
+ * be rerun against new smoothing, ramp, or mapping settings on any
+ * computer, as fast as the CPU allows.
+ *
+ * A replay goes like this:
+ * <pre>
+ * ReplayEngine replay = new ReplayEngine(new File("logs/match12"));
+ * SimulatedHardware sim = replay.install();
+ * //Build the robot code with the settings to try.  Devices must be
+ * //made from channel numbers (or from 'sim') after install().
+ * replay.addOutput("left", leftMotor);
+ * replay.run(robotLoop, 20, new FileWriter("match12-left.csv"));
+ * </pre>
+ *
+ * install() puts a fresh SimulatedHardware and a manual CarbonScheduler
+ * on its SimClock in place, so everything built afterwards runs on
+ * simulated time.  run() then steps that clock one loop period at a
+ * time.  Each step it sets every recorded input up to that moment on
+ * the simulated joysticks, analog sensors, and digital inputs, runs the
+ * scheduler's due tasks (smoothing, ramping), calls the robot loop
+ * (where CarbonUI polling and the latches run), and writes one CSV row
+ * of outputs.  Two runs over the same log with the same code produce
+ * identical files, so a diff shows exactly what a setting changed.
+ *
+ * Joystick reads are matched up by port and ID.  Analog and digital
+ * inputs are matched by the channel number in their recorded name, such
+ * as "CarbonAnalogInput 2"; use mapAnalog() and mapDigital() for devices
+ * recorded under other names.  Only inputs are replayed.  Recorded motor
+ * and solenoid outputs are what the new settings are compared against.
+ *
+ * To sweep settings, call install(), build, and run() again for each
+ * one; the log is reread from the start every run.
+ */
+public class ReplayEngine
+{
+	/**
+	 * Robot code run once per replay step.
+	 */
+	public interface Loop
+	{
+		/**
+		 * @param time Time since the start of the log, in nanoseconds.
+		 */
+		public void loop(long time);
+	}
+
+	/**
+	 * A value written to the output every replay step.
+	 */
+	public interface Probe
+	{
+		public double read();
+	}
+
+	private static final String ANALOG_PREFIX = "CarbonAnalogInput ";
+	private static final String DIGITAL_PREFIX = "CarbonDigitalInput ";
+
+	private RecordingReader reader;
+	private Map<String, Integer> analogNames;
+	private Map<String, Integer> digitalNames;
+	private List<String> outputNames;
+	private List<Probe> outputs;
+
+	private SimulatedHardware hardware;
+	private CarbonScheduler scheduler;
+
+	//Lookup tables from recorded device ID to simulated channel, or -1.
+	private int[] analogChannels;
+	private int[] digitalChannels;
+
+	/**
+	 * Opens a log for replay.
+	 * @param directory A directory a CarbonRecorder wrote to.
+	 * @throws IOException If the log can't be read.
+	 */
+	public ReplayEngine(File directory) throws IOException
+	{
+		this(new RecordingReader(directory));
+	}
+
+	/**
+	 * @param reader The log to replay.
+	 */
+	public ReplayEngine(RecordingReader reader)
+	{
+		this.reader = reader;
+		analogNames = new HashMap<String, Integer>();
+		digitalNames = new HashMap<String, Integer>();
+		outputNames = new ArrayList<String>();
+		outputs = new ArrayList<Probe>();
+	}
+
+	/**
+	 * Replays the analog input recorded as 'deviceName' on 'channel'.
+	 * @param deviceName The name the input was recorded under.
+	 * @param channel The simulated analog channel to drive.
+	 */
+	public void mapAnalog(String deviceName, int channel)
+	{
+		analogNames.put(deviceName, channel);
+	}
+
+	/**
+	 * Replays the digital input recorded as 'deviceName' on 'channel'.
+	 * @param deviceName The name the input was recorded under.
+	 * @param channel The simulated digital channel to drive.
+	 */
+	public void mapDigital(String deviceName, int channel)
+	{
+		digitalNames.put(deviceName, channel);
+	}
+
+	/**
+	 * Installs fresh simulated hardware and a manual scheduler for the
+	 * library to use, and clears the outputs.  Build the robot code
+	 * after calling this.
+	 * @return The simulated hardware, for reaching the devices directly.
+	 */
+	public SimulatedHardware install()
+	{
+		if(scheduler != null)
+		{
+			scheduler.shutdown();
+		}
+		hardware = new SimulatedHardware();
+		scheduler = new CarbonScheduler(hardware.getClock());
+		Hardware.setFactory(hardware);
+		CarbonScheduler.setInstance(scheduler);
+		outputNames.clear();
+		outputs.clear();
+		return hardware;
+	}
+
+	/**
+	 * Adds a column to the output.
+	 * @param name The column heading.
+	 * @param probe Read once per step.
+	 */
+	public void addOutput(String name, Probe probe)
+	{
+		outputNames.add(name);
+		outputs.add(probe);
+	}
+
+	/**
+	 * Adds a column holding the power of a motor, for example a
+	 * RampedMotor or a simulated motor from install()'s hardware.
+	 * @param name The column heading.
+	 * @param motor The motor to read.
+	 */
+	public void addOutput(String name, final MotorOutput motor)
+	{
+		addOutput(name, new Probe()
+		{
+			public double read()
+			{
+				return motor.get();
+			}
+		});
+	}
+
+	/**
+	 * @return The simulated hardware from the last install(), or null.
+	 */
+	public SimulatedHardware getHardware()
+	{
+		return hardware;
+	}
+
+	/**
+	 * @return The manual scheduler from the last install(), or null.
+	 */
+	public CarbonScheduler getScheduler()
+	{
+		return scheduler;
+	}
+
+	/**
+	 * Replays the whole log.
+	 * @param loop Robot code to run every step, or null for none.
+	 * @param period Time between steps, in milliseconds.
+	 * @param output Where to write the CSV, or null for none.  It is
+	 * flushed but not closed.
+	 * @return The number of steps run.
+	 * @throws IOException If the log can't be read or the output written.
+	 */
+	public long run(Loop loop, long period, Writer output) throws IOException
+	{
+		if(hardware == null)
+		{
+			throw new IllegalStateException("ReplayEngine.install() has not been called!");
+		}
+		buildChannelTables();
+
+		long periodNanos = Math.max(period, 1) * 1000000L;
+		SimClock clock = hardware.getClock();
+		long startClock = clock.nanoTime();
+		StringBuilder row = new StringBuilder();
+		if(output != null)
+		{
+			row.append("time");
+			for(int i = 0; i < outputNames.size(); i++)
+			{
+				row.append(',').append(outputNames.get(i));
+			}
+			row.append('\n');
+			output.write(row.toString());
+		}
+
+		reader.rewind();
+		boolean more = reader.next();
+		long startLog = more ? reader.getTimestamp() : 0;
+		long steps = 0;
+		long time = 0;
+		while(more)
+		{
+			//Apply every input recorded up to the end of this step.
+			while(more && reader.getTimestamp() - startLog <= time)
+			{
+				apply();
+				more = reader.next();
+			}
+
+			clock.setTime(startClock + time);
+			scheduler.runPending();
+			if(loop != null)
+			{
+				loop.loop(time);
+			}
+
+			if(output != null)
+			{
+				row.setLength(0);
+				row.append(time / 1000000L);
+				for(int i = 0; i < outputs.size(); i++)
+				{
+					row.append(',').append(outputs.get(i).read());
+				}
+				row.append('\n');
+				output.write(row.toString());
+			}
+
+			steps++;
+			time += periodNanos;
+		}
+
+		if(output != null)
+		{
+			output.flush();
+		}
+		return steps;
+	}
+
+	//Sets the simulated input described by the reader's current record.
+	private void apply()
+	{
+		int device = reader.getDevice();
+		switch(reader.getType())
+		{
+		case CarbonRecorder.TYPE_BUTTON:
+		{
+			int channel = reader.getChannel();
+			hardware.getHidSource(channel >> 8).setButton(channel & 0xFF, reader.getValueA() != 0.0);
+			break;
+		}
+		case CarbonRecorder.TYPE_AXIS:
+		{
+			int channel = reader.getChannel();
+			hardware.getHidSource(channel >> 8).setAxis(channel & 0xFF, reader.getValueA());
+			break;
+		}
+		case CarbonRecorder.TYPE_ANALOG:
+			if(device < analogChannels.length && analogChannels[device] >= 0)
+			{
+				hardware.getAnalogSource(analogChannels[device]).setValue((int)reader.getValueA());
+			}
+			break;
+		case CarbonRecorder.TYPE_DIGITAL:
+			if(device < digitalChannels.length && digitalChannels[device] >= 0)
+			{
+				hardware.getDigitalSource(digitalChannels[device]).set(reader.getValueA() != 0.0);
+			}
+			break;
+		default:
+			//Outputs aren't replayed.
+			break;
+		}
+	}
+
+	//Works out which simulated channel each recorded input drives.
+	private void buildChannelTables()
+	{
+		int size = 0;
+		for(Integer id : reader.getDeviceNames().keySet())
+		{
+			size = Math.max(size, id + 1);
+		}
+		analogChannels = new int[size];
+		digitalChannels = new int[size];
+		for(int id = 0; id < size; id++)
+		{
+			String name = reader.getDeviceName(id);
+			analogChannels[id] = findChannel(name, analogNames, ANALOG_PREFIX);
+			digitalChannels[id] = findChannel(name, digitalNames, DIGITAL_PREFIX);
+		}
+	}
+
+	private static int findChannel(String name, Map<String, Integer> mapped, String prefix)
+	{
+		if(name == null)
+		{
+			return -1;
+		}
+		Integer channel = mapped.get(name);
+		if(channel != null)
+		{
+			return channel;
+		}
+		if(name.startsWith(prefix))
+		{
+			try
+			{
+				return Integer.parseInt(name.substring(prefix.length()).trim());
+			}
+			catch(NumberFormatException e)
+			{
+				return -1;
+			}
+		}
+		return -1;
+	}
+}